@@ -0,0 +1,29 @@
+package Main;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler always on and the results
+ * written to jmh-result.json unless the command line says otherwise, so runs
+ * can be compared to catch regressions. Takes the usual JMH command line, for
+ * example "java -jar benchmarks/target/benchmarks.jar Heuristic -p
+ * cities=10000".
+ */
+public class Benchmarks {
+
+    public static void main (String[] args) throws Exception {
+        CommandLineOptions command = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(command);
+        options.addProfiler(GCProfiler.class);
+        if (!command.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!command.getResult().hasValue()) options.result("jmh-result.json");
+        new Runner(options.build()).run();
+    }
+}
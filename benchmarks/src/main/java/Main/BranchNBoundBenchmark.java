@@ -0,0 +1,57 @@
+package Main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BranchNBoundTSP#go} with every lower bound, single threaded so the
+ * numbers don't depend on the machine's processor count, with and without
+ * {@link SearchMetrics} attached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BranchNBoundBenchmark {
+
+    @Param({"16", "20"})
+    public int cities;
+
+    @Param({"1", "2"})
+    public long seed;
+
+    @Param({"cheapest-exit", "1-tree", "held-karp"})
+    public String bound;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private DistanceProvider distances;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, seed);
+        distances = DistanceProvider.forCities(instance[0], instance[1]);
+    }
+
+    @Benchmark
+    public double go () {
+        BranchNBoundTSP solver = new BranchNBoundTSP(distances);
+        solver.setLowerBound(Instances.bound(bound));
+        if (metrics) solver.setMetrics(new SearchMetrics());
+        solver.go();
+        return solver.getCost();
+    }
+}
@@ -0,0 +1,67 @@
+package Main;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading city files in the text and binary formats, as
+ * {@link Main#readCities} does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CityFileBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int cities;
+
+    @Param({"text", "binary"})
+    public String format;
+
+    private File file;
+
+    @Setup
+    public void setUp () throws IOException {
+        double[][] instance = Instances.random(cities, 1);
+        file = File.createTempFile("cities", "." + format);
+        if (format.equals("binary")) {
+            CityFile.writeBinary(file.getPath(), instance[0], instance[1]);
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new FileWriter(file)))) {
+            for (int c = 0; c < cities; c++) {
+                writer.print(instance[0][c] + "," + instance[1][c] + "\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown () {
+        file.delete();
+    }
+
+    @Benchmark
+    public CityFile read () throws IOException {
+        return CityFile.read(file.getPath(), cities);
+    }
+}
@@ -0,0 +1,76 @@
+package Main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up distances in every kind of {@link DistanceProvider}, along
+ * random rows the way the solvers scan them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DistanceBenchmark {
+
+    //amount of rows scanned per operation
+    private static final int ROWS = 16;
+
+    @Param({"1000", "5000"})
+    public int cities;
+
+    @Param({"triangular", "coordinates", "cached"})
+    public String backend;
+
+    private DistanceProvider distances;
+    private int[] rows;
+    private int next;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, 1);
+        CoordinateDistances exact = new CoordinateDistances(instance[0],
+                instance[1]);
+        switch (backend) {
+            case "triangular":
+                distances = new TriangularDistances(exact);
+                break;
+            case "coordinates":
+                distances = exact;
+                break;
+            default:
+                distances = new CachedDistances(exact, 64);
+        }
+        SplittableRandom random = new SplittableRandom(2);
+        rows = new int[1024];
+        for (int r = 0; r < rows.length; r++) {
+            rows[r] = random.nextInt(cities);
+        }
+    }
+
+    @Benchmark
+    public double scanRows () {
+        double sum = 0;
+        for (int r = 0; r < ROWS; r++) {
+            int from = rows[next];
+            next = (next + 1) % rows.length;
+            for (int to = 0; to < cities; to++) {
+                sum += distances.distance(from, to);
+            }
+        }
+        return sum;
+    }
+}
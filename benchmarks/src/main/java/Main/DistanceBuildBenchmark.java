@@ -0,0 +1,48 @@
+package Main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a triangular float matrix, which replaced converting the cities
+ * into a full matrix of doubles, next to building the full matrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DistanceBuildBenchmark {
+
+    @Param({"1000", "5000"})
+    public int cities;
+
+    private CoordinateDistances exact;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, 1);
+        exact = new CoordinateDistances(instance[0], instance[1]);
+    }
+
+    @Benchmark
+    public DistanceProvider triangular () {
+        return new TriangularDistances(exact);
+    }
+
+    @Benchmark
+    public double[][] fullMatrix () {
+        return exact.toMatrix();
+    }
+}
@@ -0,0 +1,62 @@
+package Main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Changes to a solved tour, each of which should cost about the same however
+ * many cities the tour has: adding a city and removing it again, and moving
+ * a city somewhere else.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DynamicBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int cities;
+
+    @Param({"1"})
+    public long seed;
+
+    private DynamicTSP tour;
+
+    //locations of the changes
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, seed);
+        tour = new DynamicTSP(instance[0], instance[1]);
+        random = new SplittableRandom(seed);
+    }
+
+    @Benchmark
+    public double addAndRemove () {
+        int city = tour.add(random.nextDouble(-1_000, 1_000),
+                random.nextDouble(-1_000, 1_000));
+        tour.remove(city);
+        return tour.getCost();
+    }
+
+    @Benchmark
+    public double move () {
+        tour.move(random.nextInt(cities), random.nextDouble(-1_000, 1_000),
+                random.nextDouble(-1_000, 1_000));
+        return tour.getCost();
+    }
+}
@@ -0,0 +1,78 @@
+package Main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The exact solvers on instances small enough for brute force, with and
+ * without starting from a heuristic tour and skipping mirrored tours, which
+ * Held-Karp does neither of.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExactSolverBenchmark {
+
+    @Param({"9", "11"})
+    public int cities;
+
+    @Param({"1", "2"})
+    public long seed;
+
+    @Param({"false", "true"})
+    public boolean shortcuts;
+
+    private DistanceProvider distances;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, seed);
+        distances = DistanceProvider.forCities(instance[0], instance[1]);
+    }
+
+    @Benchmark
+    public double bruteForce () {
+        BruteForceTSP solver = new BruteForceTSP(distances);
+        solver.setSymmetryBreaking(shortcuts);
+        solver.go();
+        return solver.getCost();
+    }
+
+    @Benchmark
+    public double parallelBruteForce () {
+        ParallelBruteForceTSP solver = new ParallelBruteForceTSP(distances);
+        solver.setWarmStart(shortcuts);
+        solver.setSymmetryBreaking(shortcuts);
+        solver.go();
+        return solver.getCost();
+    }
+
+    @Benchmark
+    public double branchNBound () {
+        BranchNBoundTSP solver = new BranchNBoundTSP(distances);
+        solver.setWarmStart(shortcuts);
+        solver.setSymmetryBreaking(shortcuts);
+        solver.go();
+        return solver.getCost();
+    }
+
+    @Benchmark
+    public double heldKarp () {
+        HeldKarpTSP solver = new HeldKarpTSP(distances);
+        solver.go();
+        return solver.getCost();
+    }
+}
@@ -0,0 +1,73 @@
+package Main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The heuristics on large instances: building a nearest neighbor tour,
+ * improving it with 2-opt and Or-opt, Lin-Kernighan up to its first local
+ * optimum, and the same on parts of the cities stitched together.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class HeuristicBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int cities;
+
+    @Param({"1"})
+    public long seed;
+
+    private double[] xs;
+    private double[] ys;
+
+    //nearest neighbor tour for the local search to start from
+    private int[] start;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, seed);
+        xs = instance[0];
+        ys = instance[1];
+        Main.useCities(xs, ys);
+        start = Main.nearestNeighbor();
+    }
+
+    @Benchmark
+    public int[] nearestNeighbor () {
+        return Main.nearestNeighbor();
+    }
+
+    @Benchmark
+    public int[] localSearch () {
+        return new LocalSearch(xs, ys).improve(start);
+    }
+
+    @Benchmark
+    public double linKernighan () {
+        LinKernighanTSP solver = new LinKernighanTSP(xs, ys);
+        solver.go();
+        return solver.getCost();
+    }
+
+    @Benchmark
+    public double decomposition () {
+        DecompositionTSP solver = new DecompositionTSP(xs, ys);
+        solver.go();
+        return solver.getCost();
+    }
+}
@@ -0,0 +1,45 @@
+package Main;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded random instances for the benchmarks, drawn the way
+ * {@link Main#makeCityFile} draws cities so that every run of a benchmark
+ * solves the same cities.
+ */
+final class Instances {
+
+    private Instances () {
+    }
+
+    /**
+     * @return x coordinates followed by y coordinates of the given amount of
+     * cities, uniform in [-1000, 1000] with two decimal places
+     */
+    static double[][] random (int cities, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] xs = new double[cities];
+        double[] ys = new double[cities];
+        for (int c = 0; c < cities; c++) {
+            xs[c] = Math.round(random.nextDouble(-1_000, 1_000) * 100) / 100.0;
+            ys[c] = Math.round(random.nextDouble(-1_000, 1_000) * 100) / 100.0;
+        }
+        return new double[][] {xs, ys};
+    }
+
+    /**
+     * @return the lower bound a benchmark parameter names
+     */
+    static LowerBound bound (String name) {
+        switch (name) {
+            case "cheapest-exit":
+                return new CheapestExitBound();
+            case "1-tree":
+                return new OneTreeBound();
+            case "held-karp":
+                return new HeldKarpBound();
+            default:
+                throw new IllegalArgumentException("Unknown bound " + name);
+        }
+    }
+}
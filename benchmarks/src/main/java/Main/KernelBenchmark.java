@@ -0,0 +1,61 @@
+package Main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The scalar and vector distance kernels side by side. The forks load the
+ * Vector API, whose register width follows the processor: run with
+ * -jvmArgsAppend "--add-modules jdk.incubator.vector -XX:UseAVX=2" to
+ * measure AVX2 on an AVX-512 host, the flags given replacing those here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KernelBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"16", "64", "1000", "10000"})
+    public int cities;
+
+    private DistanceKernels selected;
+
+    private double[] xs;
+    private double[] ys;
+
+    private float[] floats;
+
+    @Setup
+    public void setUp () {
+        selected = kernels.equals("scalar") ? new ScalarKernels()
+                : DistanceKernels.choose();
+        if (kernels.equals("vector") && selected instanceof ScalarKernels) {
+            throw new IllegalStateException("The Vector API is missing");
+        }
+        double[][] instance = Instances.random(cities, 1);
+        xs = instance[0];
+        ys = instance[1];
+        floats = new float[cities];
+    }
+
+    @Benchmark
+    public float[] row () {
+        selected.row(xs, ys, cities / 2, cities, floats, 0);
+        return floats;
+    }
+}
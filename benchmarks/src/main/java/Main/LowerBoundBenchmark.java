@@ -0,0 +1,93 @@
+package Main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bounding every child of a node, the work branch-and-bound does for each
+ * node it expands, on random partial tours of every depth.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LowerBoundBenchmark {
+
+    //amount of partial tours bounded in turn
+    private static final int NODES = 64;
+
+    @Param({"20", "40", "64"})
+    public int cities;
+
+    @Param({"cheapest-exit", "1-tree", "held-karp"})
+    public String bound;
+
+    private DistanceProvider distances;
+    private LowerBound lowerBound;
+
+    //per partial tour: its last city, its cost and the cities not on it
+    private final int[] last = new int[NODES];
+    private final double[] partial = new double[NODES];
+    private final long[] open = new long[NODES];
+
+    //partial tour bounded next
+    private int next;
+
+    @Setup
+    public void setUp () {
+        double[][] instance = Instances.random(cities, 1);
+        distances = DistanceProvider.forCities(instance[0], instance[1]);
+        lowerBound = Instances.bound(bound);
+        lowerBound.start(distances);
+        SplittableRandom random = new SplittableRandom(2);
+        long all = cities == Long.SIZE ? -1L : (1L << cities) - 1;
+        for (int node = 0; node < NODES; node++) {
+            int length = 1 + random.nextInt(cities - 2);
+            long left = all & ~1L;
+            int city = 0;
+            double cost = 0;
+            for (int c = 1; c < length; c++) {
+                int skip = random.nextInt(Long.bitCount(left));
+                long rest = left;
+                for (; skip > 0; skip--) rest &= rest - 1;
+                int nextCity = Long.numberOfTrailingZeros(rest);
+                cost += distances.distance(city, nextCity);
+                left &= ~(1L << nextCity);
+                city = nextCity;
+            }
+            last[node] = city;
+            partial[node] = cost;
+            open[node] = left;
+        }
+    }
+
+    @Benchmark
+    public double boundChildren () {
+        int node = next;
+        next = (next + 1) % NODES;
+        lowerBound.prepare(last[node], open[node]);
+        double sum = 0;
+        for (long rest = open[node]; rest != 0; rest &= rest - 1) {
+            int c = Long.numberOfTrailingZeros(rest);
+            long childOpen = open[node] & ~(1L << c);
+            if (childOpen == 0) continue;
+            sum += lowerBound.bound(c, partial[node]
+                    + distances.distance(last[node], c), childOpen,
+                    Double.POSITIVE_INFINITY);
+        }
+        return sum;
+    }
+}
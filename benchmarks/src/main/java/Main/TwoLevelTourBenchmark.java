@@ -0,0 +1,53 @@
+package Main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Random 2-opt moves on a {@link TwoLevelTour}, the step every
+ * Lin-Kernighan chain is made of.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TwoLevelTourBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int cities;
+
+    private TwoLevelTour tour;
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp () {
+        int[] order = new int[cities];
+        for (int c = 0; c < cities; c++) order[c] = c;
+        tour = new TwoLevelTour(order);
+        random = new SplittableRandom(1);
+    }
+
+    @Benchmark
+    public int move () {
+        int a = random.nextInt(cities);
+        int c = random.nextInt(cities);
+        int b = tour.next(a);
+        int d = tour.next(c);
+        if (c == a || c == b || d == a) return a;
+        tour.move(a, b, c, d);
+        return b;
+    }
+}
@@ -0,0 +1,362 @@
+package Main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves many instance files without asking anything, writing a line of
+ * results for each as soon as it is solved.
+ * <pre>
+ * java -cp tsp-solver.jar Main.BatchRunner INSTANCES RESULTS [options]
+ * </pre>
+ * INSTANCES is a directory whose files are all solved, or a manifest listing
+ * one instance file per line, relative to the manifest, with lines starting
+ * with # left out. RESULTS is a .csv or .jsonl file, or - for CSV on
+ * standard output. Options:
+ * <ul>
+ * <li>--method NAME, one of {@link Solver.Method} such as lin-kernighan, or
+ * auto, the default, which picks per instance as
+ * {@link Solver#automaticMethod} does</li>
+ * <li>--time SECONDS, time limit of every solve, see
+ * {@link Solver#setTimeLimit}</li>
+ * <li>--jobs N, amount of instances solved at once, the processor count by
+ * default</li>
+ * <li>--improve, improve heuristic tours with 2-opt and Or-opt moves</li>
+ * <li>--format csv|jsonl, overriding the extension of RESULTS</li>
+ * <li>--cache DIRECTORY, look up tours of instances solved before, in this
+ * or an earlier run, and keep the new ones there, see
+ * {@link SolutionCache}</li>
+ * </ul>
+ * Solving is CPU-bound, so instances are solved on a fixed pool of one
+ * thread per job, each solve itself single threaded, and only a few more
+ * instances than there are jobs are read ahead of being solved.
+ */
+public class BatchRunner {
+
+    //columns of the results, in order
+    private static final String[] COLUMNS = {"instance", "cities", "method",
+            "cost", "optimal", "cached", "read_seconds", "solve_seconds",
+            "tour", "error"};
+
+    //instance files, in the order they are submitted
+    private final List<Path> instances;
+
+    //method to solve with, or null to pick per instance
+    private Solver.Method method;
+
+    //time limit of every solve, 0 for none
+    private double timeLimit;
+
+    //amount of instances solved at once
+    private int jobs = Runtime.getRuntime().availableProcessors();
+
+    //whether heuristic tours are improved
+    private boolean improve;
+
+    //whether results are written as JSON lines rather than CSV
+    private boolean json;
+
+    //tours found before, or null
+    private SolutionCache cache;
+
+    //where results are written, one line at a time by whichever job is done
+    private Writer output;
+
+    //amount of instances solved, and of those which failed
+    private int solved;
+    private int failed;
+
+    /**
+     * @param instances instance files to solve
+     */
+    public BatchRunner (List<Path> instances) {
+        this.instances = instances;
+    }
+
+    public static void main (String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchRunner INSTANCES RESULTS "
+                    + "[--method NAME|auto] [--time SECONDS] [--jobs N] "
+                    + "[--improve] [--format csv|jsonl] [--cache DIRECTORY]");
+            System.exit(2);
+        }
+        BatchRunner runner = new BatchRunner(listInstances(Paths.get(args[0])));
+        String results = args[1];
+        runner.setJson(results.endsWith(".jsonl") || results.endsWith(".json"));
+        for (int a = 2; a < args.length; a++) {
+            switch (args[a]) {
+                case "--method":
+                    String name = args[++a];
+                    runner.setMethod(name.equals("auto") ? null
+                            : Solver.Method.parse(name));
+                    break;
+                case "--time":
+                    runner.setTimeLimit(Double.parseDouble(args[++a]));
+                    break;
+                case "--jobs":
+                    runner.setJobs(Integer.parseInt(args[++a]));
+                    break;
+                case "--improve":
+                    runner.setImprove(true);
+                    break;
+                case "--format":
+                    runner.setJson(args[++a].startsWith("json"));
+                    break;
+                case "--cache":
+                    runner.setCache(new SolutionCache(
+                            SolutionCache.DEFAULT_BYTES, Paths.get(args[++a])));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option "
+                            + args[a]);
+            }
+        }
+        long start = System.nanoTime();
+        boolean stdout = results.equals("-");
+        Writer writer = stdout
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(Paths.get(results));
+        try (Writer out = new BufferedWriter(writer)) {
+            runner.run(out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf(Locale.ROOT, "Solved %d instances in %.2f seconds "
+                + "(%.0f per minute), %d failed.%n", runner.solved, seconds,
+                runner.solved * 60 / seconds, runner.failed);
+        if (runner.cache != null) System.err.println("Cache: " + runner.cache);
+    }
+
+    /**
+     * @return every file of a directory sorted by name, or the files a
+     * manifest lists
+     */
+    public static List<Path> listInstances (Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                return files.filter(Files::isRegularFile).sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        Path directory = source.toAbsolutePath().getParent();
+        List<Path> listed = new ArrayList<>();
+        for (String line : Files.readAllLines(source)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            listed.add(directory.resolve(line));
+        }
+        return listed;
+    }
+
+    /**
+     * @param solveWith method to solve every instance with, or null to pick
+     * one per instance, the default
+     */
+    public void setMethod (Solver.Method solveWith) {
+        method = solveWith;
+    }
+
+    /**
+     * @param seconds time limit of every solve, 0 by default for none
+     */
+    public void setTimeLimit (double seconds) {
+        timeLimit = seconds;
+    }
+
+    /**
+     * @param amount amount of instances to solve at once, the processor
+     * count by default
+     */
+    public void setJobs (int amount) {
+        jobs = Math.max(1, amount);
+    }
+
+    /**
+     * @param improveTours whether to improve heuristic tours, false by
+     * default
+     */
+    public void setImprove (boolean improveTours) {
+        improve = improveTours;
+    }
+
+    /**
+     * @param jsonLines whether to write JSON lines rather than CSV, the
+     * default
+     */
+    public void setJson (boolean jsonLines) {
+        json = jsonLines;
+    }
+
+    /**
+     * @param solutionCache cache shared by every solve, or null for none, the
+     * default
+     */
+    public void setCache (SolutionCache solutionCache) {
+        cache = solutionCache;
+    }
+
+    /**
+     * Solve every instance, writing the results in the order the solves
+     * finish.
+     */
+    public void run (Writer out) throws IOException, InterruptedException {
+        output = out;
+        solved = 0;
+        failed = 0;
+        if (!json) output.write(String.join(",", COLUMNS) + "\n");
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+
+        //instances submitted but not yet solved, so that reading them doesn't
+        //run ahead of solving them
+        Semaphore pending = new Semaphore(2 * jobs);
+        try {
+            for (Path instance : instances) {
+                pending.acquire();
+                pool.execute(() -> {
+                    try {
+                        solve(instance);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        output.flush();
+    }
+
+    private void solve (Path instance) {
+        long start = System.nanoTime();
+        double readSeconds = 0;
+        int cities = 0;
+        Solver.Result result = null;
+        String error = null;
+        try {
+            CityFile file = CityFile.read(instance.toString());
+            readSeconds = (System.nanoTime() - start) / 1e9;
+            Solver solver = new Solver(file);
+            cities = solver.size();
+            if (cities == 0) throw new IOException("The file holds no cities");
+            solver.setTimeLimit(timeLimit);
+            solver.setImprove(improve);
+            solver.setCache(cache);
+            result = solver.solve(method != null ? method
+                    : solver.automaticMethod());
+        } catch (Exception | OutOfMemoryError x) {
+            error = x.toString();
+        }
+        String line = json
+                ? jsonLine(instance.toString(), cities, readSeconds, result,
+                        error)
+                : csvLine(instance.toString(), cities, readSeconds, result,
+                        error);
+        write(line, error == null);
+    }
+
+    private synchronized void write (String line, boolean success) {
+        try {
+            output.write(line);
+            output.write('\n');
+        } catch (IOException x) {
+            throw new IllegalStateException("Writing results failed", x);
+        }
+        if (success) solved++;
+        else failed++;
+    }
+
+    private static String csvLine (String instance, int cities,
+            double readSeconds, Solver.Result result, String error)
+    {
+        StringBuilder line = new StringBuilder(csv(instance)).append(',')
+                .append(cities).append(',');
+        if (result != null) {
+            line.append(result.method).append(',').append(result.cost)
+                    .append(',').append(result.optimal).append(',')
+                    .append(result.cached).append(',').append(readSeconds)
+                    .append(',').append(result.seconds).append(',');
+            if (result.tour != null) {
+                for (int c = 0; c < result.tour.length; c++) {
+                    if (c > 0) line.append(' ');
+                    line.append(result.tour[c]);
+                }
+            }
+            line.append(',');
+        } else {
+            line.append(",,,,").append(readSeconds).append(",,,");
+        }
+        if (error != null) line.append(csv(error));
+        return line.toString();
+    }
+
+    /**
+     * @return a CSV field holding the text, quoted if it needs to be
+     */
+    private static String csv (String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0
+                && text.indexOf('\n') < 0) return text;
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonLine (String instance, int cities,
+            double readSeconds, Solver.Result result, String error)
+    {
+        StringBuilder line = new StringBuilder("{\"instance\":")
+                .append(json(instance)).append(",\"cities\":").append(cities)
+                .append(",\"read_seconds\":").append(readSeconds);
+        if (result != null) {
+            line.append(",\"method\":\"").append(result.method)
+                    .append("\",\"cost\":")
+                    .append(Double.isFinite(result.cost) ? result.cost : null)
+                    .append(",\"optimal\":").append(result.optimal)
+                    .append(",\"cached\":").append(result.cached)
+                    .append(",\"solve_seconds\":").append(result.seconds)
+                    .append(",\"tour\":");
+            if (result.tour == null) {
+                line.append("null");
+            } else {
+                line.append('[');
+                for (int c = 0; c < result.tour.length; c++) {
+                    if (c > 0) line.append(',');
+                    line.append(result.tour[c]);
+                }
+                line.append(']');
+            }
+        }
+        if (error != null) line.append(",\"error\":").append(json(error));
+        return line.append('}').toString();
+    }
+
+    /**
+     * @return a JSON string holding the text
+     */
+    private static String json (String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int c = 0; c < text.length(); c++) {
+            char ch = text.charAt(c);
+            if (ch == '"' || ch == '\\') {
+                quoted.append('\\').append(ch);
+            } else if (ch < ' ') {
+                quoted.append(String.format("\\u%04x", (int) ch));
+            } else {
+                quoted.append(ch);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
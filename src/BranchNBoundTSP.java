@@ -1,271 +1,934 @@
 package Main;
 
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.TreeSet;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class BranchNBoundTSP {
-    
-    //adjacency matrix
-    private final double[][] ADJ_MATRIX;
-    
-    //saved cost of best tour found so far
+
+    //largest amount of cities a visited set fits into a long bitmask for
+    public static final int MAX_CITIES = Long.SIZE;
+
+    //amount of node slots a single threaded search starts out with
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    //amount of node slots the search of a stolen subtree starts out with
+    private static final int SUBTREE_CAPACITY = 1 << 6;
+
+    //amount of nodes a worker expands between checking the budgets
+    private static final int BUDGET_INTERVAL = 1 << 8;
+
+    //distances between cities
+    private final DistanceProvider DISTANCES;
+
+    //amount of cities on the graph
+    private final int CITIES;
+
+    //bitmask with the bit of every city on the graph set
+    private final long ALL_CITIES;
+
+    //saved cost of best tour found by the last run
     private double bestWeight;
-    
-    //the complete tour holding the current best cost
+
+    //the complete tour holding the best cost
     private int[] bestPath;
-    
+
+    //how many levels a node taken off the queue is followed depth-first along
+    //its cheapest child before going back to the queue
+    private int diveDepth;
+
+    //amount of worker threads to search with
+    private int threads = 1;
+
+    //way of computing the lower bounds of partial tours
+    private LowerBound bounds;
+
+    //best full tour found so far by any worker, replaced as a whole so its
+    //cost and tour always match
+    private final AtomicReference<Incumbent> incumbent =
+            new AtomicReference<>();
+
+    //amount of nodes expanded by all workers
+    private final LongAdder expanded = new LongAdder();
+
+    //amount of nodes expanded by the last run
+    private long expandedNodes;
+
+    //counters the runs publish their progress to, or null
+    private SearchMetrics metrics;
+
+    //seconds and amount of expanded nodes a run may take, 0 for no limit
+    private double timeLimit;
+    private long nodeLimit;
+
+    //called with every new best tour, or null
+    private Consumer<Solution> listener;
+
+    //cost of the last tour handed to the listener
+    private double delivered;
+
+    //System.nanoTime() the current run started at and must stop at
+    private long startTime;
+    private long deadline;
+
+    //whether the current run has a budget, and whether it ran out
+    private boolean limited;
+    private volatile boolean stopped;
+
+    //amount of nodes expanded by all workers as of their last budget check
+    private final AtomicLong budgetUsed = new AtomicLong();
+
+    //smallest lower bound of the nodes left unexplored when the budget ran
+    //out
+    private final DoubleAccumulator openBound =
+            new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+
+    //proven lower bound on the cost of any tour, from the last run
+    private double lowerBoundCost;
+
+    //tour to start the runs with as the best one, or null
+    private int[] startTour;
+
+    //whether to start the runs with a tour built by WarmStart when not
+    //given one
+    private boolean warmStart = true;
+
+    //whether to skip the reverse of every tour, if the distances allow it,
+    //and whether the current run does
+    private boolean breakSymmetry = true;
+    private boolean mirrored;
+
     /**
      * Creates an object ready to answer the TSP problem on the given adjacency
      * matrix using the branch-and-bound method.
      *
      * @param adjacencyMatrix a 2D array of costs where the first dimension
      * would access the city being traveled from and the second the city being
-     * traveled to
+     * traveled to, for at most {@link #MAX_CITIES} cities
      */
     public BranchNBoundTSP (double[][] adjacencyMatrix) {
-        ADJ_MATRIX = adjacencyMatrix;
+        this(new MatrixDistances(adjacencyMatrix));
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances using the branch-and-bound method.
+     *
+     * @param distances cost of travelling between any two of at most
+     * {@link #MAX_CITIES} cities
+     */
+    public BranchNBoundTSP (DistanceProvider distances) {
+        if (distances.size() > MAX_CITIES) {
+            throw new IllegalArgumentException("Branch-and-bound handles at "
+                    + "most " + MAX_CITIES + " cities");
+        }
+        DISTANCES = distances;
+        CITIES = distances.size();
+        ALL_CITIES = CITIES == Long.SIZE ? -1L : (1L << CITIES) - 1;
+        diveDepth = CITIES;
+        bounds = new CheapestExitBound();
+    }
+
+    /**
+     * Set how many levels each node taken off the queue is followed
+     * depth-first, always into its child with the smallest lower bound, while
+     * its other children are queued. Diving finds a full tour to prune
+     * against early on. 0 searches purely best-first.
+     *
+     * @param depth amount of levels to dive, the default dives to full tours
+     */
+    public void setDiveDepth (int depth) {
+        diveDepth = depth;
+    }
+
+    /**
+     * Set the way of computing lower bounds of partial tours for the next
+     * runs. Stronger bounds prune more of the search tree but take longer to
+     * compute per node.
+     *
+     * @param bound lower bound to use, the default is
+     * {@link CheapestExitBound}
+     */
+    public void setLowerBound (LowerBound bound) {
+        bounds = bound;
+    }
+
+    /**
+     * Set how many worker threads the next runs search with. With more than
+     * one, every worker searches subtrees from its own queue, and whenever
+     * other workers are idle it hands the front node of its queue over to be
+     * stolen as a new subtree. Full tours are published to all workers at
+     * once so every worker prunes against the best one found anywhere.
+     *
+     * @param amount amount of worker threads, the default is 1
+     */
+    public void setThreads (int amount) {
+        threads = amount;
+    }
+
+    /**
+     * Set the counters the next runs publish their progress to, to be read
+     * while they run. Without any, the search only counts into fields of its
+     * own workers, so leaving them out costs next to nothing.
+     *
+     * @param searchMetrics counters to reset and publish to at the start of
+     * every run, or null for none, the default
+     */
+    public void setMetrics (SearchMetrics searchMetrics) {
+        metrics = searchMetrics;
+    }
+
+    /**
+     * Set how long the next runs may search. A run out of time stops with
+     * the best tour found so far, and the smallest lower bound among the
+     * partial tours it left unexplored as proof of how far that tour can be
+     * from the optimum.
+     *
+     * @param seconds time to search for, 0 by default which searches until
+     * the optimum is proven
+     */
+    public void setTimeLimit (double seconds) {
+        timeLimit = seconds;
+    }
+
+    /**
+     * Set how many nodes the next runs may expand, stopping like
+     * {@link #setTimeLimit} does once they are used up. Workers check the
+     * budget every few hundred nodes, so a run may expand that many more per
+     * worker.
+     *
+     * @param nodes amount of nodes to expand, 0 by default for no limit
+     */
+    public void setNodeLimit (long nodes) {
+        nodeLimit = nodes;
+    }
+
+    /**
+     * Set a callback for every tour better than all found before it in a
+     * run, so the tour can be used while the search goes on. It is called on
+     * the worker thread which found the tour, one call at a time and with
+     * costs only ever going down, and holds up that worker until it returns.
+     * To hand the tours to subscribers on other threads, pass the submit
+     * method of a SubmissionPublisher.
+     *
+     * @param improvementListener callback, or null for none, the default
+     */
+    public void setImprovementListener (Consumer<Solution> improvementListener)
+    {
+        listener = improvementListener;
     }
-    
+
+    /**
+     * Set a tour the next runs start with as the best one found, so the
+     * search prunes against its cost from the first node on. It counts as
+     * found by the run, so it is handed to the improvement listener and
+     * returned if the search finds nothing cheaper.
+     *
+     * @param path a tour over all cities beginning and ending at city 0 like
+     * {@link #getTour} returns, or null to build one if
+     * {@link #setWarmStart} is on, the default
+     *
+     * @throws IllegalArgumentException if the path is not such a tour
+     */
+    public void setStartTour (int[] path) {
+        startTour = path == null ? null : checkedTour(path, CITIES);
+    }
+
+    /**
+     * @return a copy of the path, if it visits each of the cities once
+     * beginning and ending at city 0
+     *
+     * @throws IllegalArgumentException otherwise
+     */
+    static int[] checkedTour (int[] path, int cities) {
+        if (path.length != cities + 1 || path[0] != 0 || path[cities] != 0) {
+            throw new IllegalArgumentException("A tour over " + cities
+                    + " cities has " + (cities + 1) + " entries beginning and"
+                    + " ending at city 0");
+        }
+        boolean[] visited = new boolean[cities];
+        for (int c = 0; c < cities; c++) {
+            int city = path[c];
+            if (city < 0 || city >= cities || visited[city]) {
+                throw new IllegalArgumentException("A tour visits every city"
+                        + " once, not city " + city + " at position " + c);
+            }
+            visited[city] = true;
+        }
+        return path.clone();
+    }
+
+    /**
+     * Set whether the next runs not given a tour by {@link #setStartTour}
+     * start with a nearest neighbor tour improved by 2-opt and Or-opt moves,
+     * which takes O(N^2) per pass of improvements.
+     *
+     * @param enabled true by default
+     */
+    public void setWarmStart (boolean enabled) {
+        warmStart = enabled;
+    }
+
+    /**
+     * Set whether the next runs skip the reverse of every tour when the
+     * distances are the same both ways, by never appending city 2 to a
+     * partial tour without city 1, which halves the full tours searched.
+     *
+     * @param enabled true by default
+     */
+    public void setSymmetryBreaking (boolean enabled) {
+        breakSymmetry = enabled;
+    }
+
     public void go () {
-        
+
         //initialize to a value that guarantees any weight is better than it
-        bestWeight = Double.POSITIVE_INFINITY;
-        
-        //create a TreeSet structure which will function as a priority queue
-        //assigning priority based on comparisons done by the below Comparator
-        //object where smaller object have higher priority
-        TreeSet<Node> q = new TreeSet<>(new Comparator<Node>() {
-            
-            @Override
-            public int compare (Node o1, Node o2) {
-                
-                //a node is considered smaller if it has a higher level (is
-                //deeper down the tree and includes more cities) and higher
-                //if it has less but an equal amount doesn't indicate equality
-                if (o1.level > o2.level) return -1;
-                else if (o1.level < o2.level) return 1;
-                
-                //a smaller lower bound indicates a smaller object, and a larger
-                //one indicates a larger object but same lower bound does not
-                //indicate equality
-                if (o1.lowerBound < o2.lowerBound) return -1;
-                else if (o1.lowerBound > o2.lowerBound) return 1;
-                
-                double o1Sum = 0.0;
-                double o2Sum = 0.0;
-                int prev;
-                for (int c = 1; c < o1.tour.length; c++) {
-                    prev = c - 1;
-                    o1Sum += weight(o1.tour[prev], o1.tour[c]);
-                    o2Sum += weight(o2.tour[prev], o2.tour[c]);
+        incumbent.set(new Incumbent(Double.POSITIVE_INFINITY, null));
+        expanded.reset();
+        delivered = Double.POSITIVE_INFINITY;
+        startTime = System.nanoTime();
+        deadline = startTime + (long) (timeLimit * 1e9);
+        limited = timeLimit > 0 || nodeLimit > 0;
+        stopped = false;
+        budgetUsed.set(0);
+        openBound.reset();
+        boolean symmetric = CITIES >= 3 && DISTANCES.isSymmetric();
+        mirrored = breakSymmetry && symmetric;
+        if (metrics != null) metrics.start();
+        if (startTour != null) {
+            offer(WarmStart.cost(DISTANCES, startTour), startTour.clone());
+        } else if (warmStart && CITIES >= 2) {
+            int[] tour = WarmStart.tour(DISTANCES, symmetric);
+            offer(WarmStart.cost(DISTANCES, tour), tour);
+        }
+
+        try {
+            //a single city is already a full tour
+            if (CITIES == 1) {
+                offer(0, new int[2]);
+            } else if (threads <= 1) {
+                bounds.start(DISTANCES);
+                new Search(bounds, null, null, INITIAL_CAPACITY)
+                        .run(new int[]{0}, 0, 0);
+            } else {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    pool.invoke(new SubtreeTask(null, new int[]{0}, 0, 0,
+                            ThreadLocal.withInitial(() -> {
+                                LowerBound bound = bounds.copy();
+                                bound.start(DISTANCES);
+                                return bound;
+                            })));
+                } finally {
+                    pool.shutdown();
                 }
-                if (o1Sum < o2Sum) return -1;
-                else if (o1Sum > o2Sum) return 1;
-                return 0;
-            }
-        });
-        
-        //this will store new paths created by expanding existing partial
-        //tours
-        int[] aPath;
-        
-        //initialize first node comprising just vertex 0
-        //after that, this will store existing nodes removed from the queue
-        Node node = new Node(new int[]{0});
-        
-        //this will store newly created nodes
-        Node newNode;
-        
-        //add the initial node onto the queue
-        q.add(node);
-        
-        //while the queue is not empty
-        while (!q.isEmpty()) {
-            
-            //remove a node from the front of the queue
-            node = q.first();
-            q.remove(node);
-            
-            //if its lower bound is worse than the current best, move onto the
-            //next node on the queue
-            if (node.lowerBound >= bestWeight) continue;
-            
-            //for every city on the graph
-            for (int c = 1; c < ADJ_MATRIX.length; c++) {
-                
-                //as long as the city is not already included in the partial
-                //tour
-                if (node.skip[c]) continue;
-                
-                //create a new path by appending this city to the existing
-                //partial tour in the current node
-                aPath = add(node.tour, c);
-                
-                //create a new node with this path
-                newNode = new Node(aPath);
-                
-                //if this new node has a lower bound less than the best current 
-                //full tour cost, this means it can potentially become the next 
-                //optimal tour (the lower bound value grows as cities are added
-                //onto the tour) so add it onto the queue
-                if (newNode.lowerBound < bestWeight) q.add(newNode);
-                //don't need to check for full paths, this condition will
-                //always fail on a full path, the lowerBound can be equal to
-                //but never less than the best weight
             }
+        } finally {
+            if (metrics != null) metrics.finish();
         }
+        Incumbent best = incumbent.get();
+        bestWeight = best.cost;
+        bestPath = best.tour;
+        expandedNodes = expanded.sum();
+        lowerBoundCost = Math.min(openBound.get(), bestWeight);
     }
-    
-    private double weight (int city1, int city2) {
-        return ADJ_MATRIX[city1][city2];
+
+    /**
+     * Get ready to search subtrees one at a time with {@link #searchSubtree},
+     * as a worker of a {@link DistributedBranchNBoundTSP} does, forgetting
+     * the best tour of any earlier run.
+     */
+    void startSubtrees () {
+        incumbent.set(new Incumbent(Double.POSITIVE_INFINITY, null));
+        expanded.reset();
+        delivered = Double.POSITIVE_INFINITY;
+        startTime = System.nanoTime();
+        limited = false;
+        stopped = false;
+        mirrored = breakSymmetry && CITIES >= 3 && DISTANCES.isSymmetric();
+        bounds.start(DISTANCES);
     }
-    
-    private int[] add (int[] array, int newE) {
-        int[] results = Arrays.copyOf(array, array.length + 1);
-        results[array.length] = newE;
-        return results;
+
+    /**
+     * Search every full tour beginning with a partial tour on the calling
+     * thread, pruning against the best tour so far and handing nodes of its
+     * queue over to the frontier whenever it wants them.
+     *
+     * @param prefix partial tour starting with city 0
+     * @param bound lower bound of the partial tour
+     *
+     * @return amount of nodes expanded
+     */
+    long searchSubtree (int[] prefix, double bound, Frontier frontier) {
+        double partial = 0;
+        for (int c = 1; c < prefix.length; c++)
+            partial += weight(prefix[c - 1], prefix[c]);
+        Search search = new Search(bounds, null, frontier, SUBTREE_CAPACITY);
+        search.run(prefix, partial, bound);
+        return search.expandedNodes;
+    }
+
+    /**
+     * Take a tour found elsewhere as the best one if it beats it.
+     *
+     * @param tour full tour beginning and ending at city 0
+     */
+    void improve (double cost, int[] tour) {
+        offer(cost, tour);
+    }
+
+    /**
+     * Where a search hands nodes of its queue over to be searched by another
+     * process.
+     */
+    interface Frontier {
+
+        /**
+         * @return whether a node should be handed over now, checked once
+         * after every node taken off the queue
+         */
+        boolean wanted ();
+
+        /**
+         * @param tour partial tour of the node, starting with city 0
+         * @param bound lower bound of the partial tour
+         */
+        void split (int[] tour, double bound);
+    }
+
+    /**
+     * Count nodes a worker expanded against the budgets.
+     *
+     * @return whether the run is out of budget
+     */
+    private boolean spend (long nodes) {
+        if (stopped) return true;
+        long used = budgetUsed.addAndGet(nodes);
+        if ((nodeLimit > 0 && used >= nodeLimit)
+                || (timeLimit > 0 && System.nanoTime() - deadline >= 0)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * Publish a full tour to all workers if it beats the best one so far.
+     */
+    private void offer (double cost, int[] tour) {
+        Incumbent next = new Incumbent(cost, tour);
+        Incumbent current;
+        do {
+            current = incumbent.get();
+            if (cost >= current.cost) return;
+        } while (!incumbent.compareAndSet(current, next));
+        if (metrics != null) metrics.improved(cost);
+        NewBestTourEvent event = new NewBestTourEvent();
+        if (event.shouldCommit()) {
+            event.cost = cost;
+
+            //without counters, the workers' last budget checks or the
+            //searches finished so far are all there is to go by
+            event.expanded = metrics != null ? metrics.expandedNodes()
+                    : Math.max(budgetUsed.get(), expanded.sum());
+            event.commit();
+        }
+        if (listener != null) deliver(next);
+    }
+
+    private synchronized void deliver (Incumbent improvement) {
+
+        //a worker may lose the race to deliver its tour to a better one
+        if (improvement.cost >= delivered) return;
+        delivered = improvement.cost;
+        listener.accept(new Solution(improvement.cost,
+                improvement.tour.clone(),
+                (System.nanoTime() - startTime) / 1e9));
     }
-    
+
+    private double weight (int city1, int city2) {
+        return DISTANCES.distance(city1, city2);
+    }
+
     public int[] getTour () {
         return bestPath;
     }
-    
+
     public double getCost () {
         return bestWeight;
     }
-    
+
+    /**
+     * @return amount of nodes expanded by the last run
+     */
+    public long getExpandedNodes () {
+        return expandedNodes;
+    }
+
+    /**
+     * @return the largest cost no tour can beat as proven by the last run,
+     * the cost of its tour if it searched to the end
+     */
+    public double getLowerBound () {
+        return lowerBoundCost;
+    }
+
+    /**
+     * @return how much the cost of the tour found by the last run may at most
+     * exceed the optimum, relative to that cost, 0 if it is proven optimal
+     * and infinite if the run found no tour
+     */
+    public double getGap () {
+        if (bestPath == null) return Double.POSITIVE_INFINITY;
+        if (bestWeight == 0) return 0;
+        return (bestWeight - lowerBoundCost) / bestWeight;
+    }
+
     /**
-     * Represents a partial tour of the graph and the lowest bound of the tour.
+     * @return whether the last run proved its tour optimal, by searching to
+     * the end or by leaving only partial tours which can't beat it
      */
-    private class Node {
-        
-        //array of vertex indexes making up this partial tour, in traversal 
-        //order.
+    public boolean isOptimal () {
+        return bestPath != null && lowerBoundCost >= bestWeight;
+    }
+
+    /**
+     * A tour handed to the improvement listener.
+     */
+    public static class Solution {
+
+        public final double cost;
+
+        //full tour starting and ending at city 0
+        public final int[] tour;
+
+        //seconds into the run it was found at
+        public final double seconds;
+
+        private Solution (double cost, int[] tour, double seconds) {
+            this.cost = cost;
+            this.tour = tour;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString () {
+            return String.format("%.2f after %.3f s: %s", cost, seconds,
+                    Arrays.toString(tour));
+        }
+    }
+
+    /**
+     * A full tour and its cost, never changed once published.
+     */
+    private static class Incumbent {
+
+        private final double cost;
+
         private final int[] tour;
-        
-        //level at which the node is contained within the tree
-        private final int level;
-        
-        //computed lower bound for this tour
-        private final double lowerBound;
-        
-        private final boolean[] skip;
-        
+
+        private Incumbent (double cost, int[] tour) {
+            this.cost = cost;
+            this.tour = tour;
+        }
+    }
+
+    /**
+     * Searches the subtree below one partial tour. New subtrees are split off
+     * from its queue whenever other workers are idle.
+     */
+    private class SubtreeTask extends CountedCompleter<Void> {
+
+        //partial tour at the root of the subtree, in traversal order
+        private final int[] prefix;
+
+        //cost and lower bound of the partial tour
+        private final double cost;
+        private final double bound;
+
+        //lower bound of every worker thread, started once per thread
+        private final ThreadLocal<LowerBound> bounds;
+
+        private SubtreeTask (CountedCompleter<?> parent, int[] prefix,
+                double cost, double bound, ThreadLocal<LowerBound> bounds)
+        {
+            super(parent);
+            this.prefix = prefix;
+            this.cost = cost;
+            this.bound = bound;
+            this.bounds = bounds;
+        }
+
+        @Override
+        public void compute () {
+            new Search(bounds.get(), this, null, SUBTREE_CAPACITY)
+                    .run(prefix, cost, bound);
+            tryComplete();
+        }
+
         /**
-         * Create a node representing a partial tour comprised of the
-         * given vertices and compute its lower bound.
+         * Hand a partial tour over to be searched as a separate subtree.
+         */
+        private void split (int[] tour, double tourCost, double tourBound) {
+            addToPendingCount(1);
+            new SubtreeTask(this, tour, tourCost, tourBound, bounds).fork();
+        }
+    }
+
+    /**
+     * Best-first search of the subtree below one partial tour, keeping its
+     * own queue and node storage.
+     */
+    private class Search {
+
+        //way of computing the lower bounds of partial tours
+        private final LowerBound bounds;
+
+        //task being searched, or null when searching single threaded
+        private final SubtreeTask task;
+
+        //where to hand nodes over to other processes, or null
+        private final Frontier frontier;
+
+        //partial tour at the root of the subtree
+        private int[] prefix;
+
+        //counters to publish to, or null
+        private final SearchMetrics metrics;
+
+        //amount of nodes expanded
+        private long expandedNodes;
+
+        //amount of nodes created, pruned and enqueued since the counters were
+        //last published, and of nodes expanded until then
+        private long createdNodes;
+        private long prunedNodes;
+        private long enqueuedNodes;
+        private long publishedExpanded;
+
+        //size of the queue when the counters were last published, and the
+        //largest it has been since
+        private int publishedQueue;
+        private int queuePeak;
+
+        //amount of nodes expanded as of the last budget check
+        private long budgetChecked;
+
+        //node storage, every node is an index into these arrays
+
+        //index of the node this one was expanded from, or -1 for the root
+        private int[] parent;
+
+        //city appended to the parent's partial tour
+        private byte[] city;
+
+        //cost of the partial tour, not including a return to city 0
+        private double[] cost;
+
+        //computed lower bound for any full tour extending the partial tour
+        private double[] lowerBound;
+
+        //bitmask of the cities included in the partial tour, its bit count
+        //less one is the level at which the node is contained within the tree
+        private long[] visited;
+
+        //amount of live nodes expanded from this one, a node is released once
+        //it is expanded and none of its children is left
+        private int[] children;
+
+        //amount of slots ever handed out
+        private int used;
+
+        //released slots ready to be handed out again
+        private int[] free;
+        private int freeCount;
+
+        //binary heap of node indexes functioning as a priority queue where a
+        //smaller lower bound, and then a deeper level, has higher priority
+        private int[] heap;
+        private int heapSize;
+
+        private Search (LowerBound bounds, SubtreeTask task, Frontier frontier,
+                int capacity)
+        {
+            this.bounds = bounds;
+            this.task = task;
+            this.frontier = frontier;
+            metrics = BranchNBoundTSP.this.metrics;
+            parent = new int[capacity];
+            city = new byte[capacity];
+            cost = new double[capacity];
+            lowerBound = new double[capacity];
+            visited = new long[capacity];
+            children = new int[capacity];
+            free = new int[capacity];
+            heap = new int[capacity];
+        }
+
+        /**
+         * Search every full tour beginning with the given partial tour.
          *
-         * @param partialTour array of vertex indexes making up this partial
-         * tour, in traversal order.
+         * @param rootTour partial tour at the root of the subtree, starting
+         * with city 0
+         * @param rootCost cost of the partial tour
+         * @param rootBound lower bound of the partial tour
          */
-        public Node (int[] partialTour) {
-            
-            //tour length represents this node's depth in the tree, with only
-            //1 vertex (the beginning vertex) being the root
-            level = partialTour.length - 1;
-            
-            //save the tour
-            tour = partialTour;
-            
-            //initialize lower bound sum
-            double bound = 0;
-            
-            //array of vertices which will not be searched for optimal cost
-            //of leaving because they have already been exited from in the 
-            //partial tour
-            skip = new boolean[ADJ_MATRIX.length];
-            
-            //if this is not the root of the tree
-            if (level != 0) {
-                
-                //for every vertex except the last
-                int limit = tour.length - 1;
-                for (int c = 0; c < limit; c++) {
-                    
-                    //add weight from this vertex to next vertex to the 
-                    //lower bound sum
-                    bound += weight(tour[c], tour[c + 1]);
-                    
-                    //the current vertex has already been travelled from
-                    skip[tour[c]] = true;
+        private void run (int[] rootTour, double rootCost, double rootBound) {
+            prefix = rootTour;
+            long cities = 0;
+            for (int c : rootTour) cities |= 1L << c;
+
+            //initialize the root node and add it onto the queue
+            push(newNode(-1, rootTour[rootTour.length - 1], rootCost,
+                    rootBound, cities));
+
+            //while the queue is not empty
+            while (heapSize > 0) {
+
+                //once out of budget, the front of the queue holds the
+                //smallest lower bound left in this subtree
+                if (limited && (stopped
+                        || expandedNodes - budgetChecked >= BUDGET_INTERVAL
+                        && outOfBudget())) {
+                    openBound.accumulate(lowerBound[heap[0]]);
+                    break;
                 }
-            }
-            
-            //if this represents a full tour
-            if (level == ADJ_MATRIX.length - 1) {
-                
-                //add the weight from the last vertex to vertex 0
-                bound += weight(tour[tour.length - 1], 0);
-                
-                //if this is found to be the new best bound
-                if (bound < bestWeight) {
-                    
-                    //save it
-                    bestWeight = bound;
-                    
-                    //create array for new best path
-                    int[] temp = new int[ADJ_MATRIX.length + 1];
-                    
-                    //copy the tour into it
-                    System.arraycopy(tour, 0, temp, 0, tour.length);
-                    
-                    //add vertex 0 to the end
-                    temp[temp.length - 1] = 0;
-                    
-                    //save the best path
-                    bestPath = temp;
-                    
-                    //big question on my mind - Will two full tour nodes ever
-                    //be compared? And if so, should the lowerBound of those
-                    //include the weight of the return back to vertex 0 or not?
-                    
+
+                //remove a node from the front of the queue and dive from it
+                int node = pop();
+                for (int depth = 0; node >= 0; depth++) {
+
+                    //if its lower bound is worse than the current best, move
+                    //onto the next node on the queue
+                    if (lowerBound[node] >= incumbent.get().cost) {
+                        prunedNodes++;
+                        release(node);
+                        break;
+                    }
+                    node = expand(node, depth < diveDepth);
                 }
-                    
-                //this represents a partial tour with less vertices than
-                //then the full amount of cities
-            } else {
-            
-                //will contain lowest found cost of leaving a vertex
-                double best;
-            
-                //for all vertices c1 of the graph
-                for (int c1 = 0; c1 < ADJ_MATRIX.length; c1++) {
-
-                    //if vertex c1 has been exited from do not find its lowest
-                    //cost of leaving, the weight of leaving is already known 
-                    //and included in the lower bound sum
-                    if (skip[c1]) continue;
-
-                    //start of with a value for best that ensures any cost is 
-                    //better than it
-                    best = Double.POSITIVE_INFINITY;
-
-                    //once again, for all vertices c2 of the graph
-                    for (int c2 = 0; c2 < ADJ_MATRIX.length; c2++) {
-
-                        //if c2 is already in the tour or same as c1
-                        //do not consider weight from c1 to c2
-                        if (skip[c2] || c1 == c2) continue;
-
-                        //else save the lower (current best or weight from c1 to
-                        //c2)
-                        best = Math.min(best, weight(c1,c2));
+
+                //let idle workers steal the front of the queue
+                if (task != null && heapSize > 1
+                        && ForkJoinTask.getSurplusQueuedTaskCount() < 1) {
+                    node = pop();
+                    task.split(tourOf(node), cost[node], lowerBound[node]);
+                    release(node);
+                }
+
+                //or other processes, if they ask for it
+                if (frontier != null && heapSize > 1 && frontier.wanted()) {
+                    node = pop();
+                    frontier.split(tourOf(node), lowerBound[node]);
+                    release(node);
+                }
+            }
+            expanded.add(expandedNodes);
+            if (metrics != null) publish();
+        }
+
+        private boolean outOfBudget () {
+            long nodes = expandedNodes - budgetChecked;
+            budgetChecked = expandedNodes;
+            return spend(nodes);
+        }
+
+        private void publish () {
+            metrics.publish(createdNodes, expandedNodes - publishedExpanded,
+                    prunedNodes, enqueuedNodes, heapSize,
+                    heapSize - publishedQueue, queuePeak);
+            createdNodes = 0;
+            prunedNodes = 0;
+            enqueuedNodes = 0;
+            publishedExpanded = expandedNodes;
+            publishedQueue = heapSize;
+            queuePeak = heapSize;
+        }
+
+        /**
+         * Create the children of a node by appending every city not yet on
+         * its partial tour, keeping only those which can still beat the best
+         * tour.
+         *
+         * @param node node to expand
+         * @param dive whether the child with the smallest lower bound should
+         * be returned instead of queued
+         *
+         * @return the child to dive into, or -1 if there is none
+         */
+        private int expand (int node, boolean dive) {
+            expandedNodes++;
+            if (metrics != null
+                    && expandedNodes % SearchMetrics.PUBLISH_INTERVAL == 0)
+                publish();
+            int from = city[node];
+            int childLevel = level(node) + 1;
+            long open = ~visited[node] & ALL_CITIES;
+
+            //city 2 only follows city 1, the reverse of every other tour is
+            //searched instead
+            long next = mirrored && (open & 2L) != 0 ? open & ~4L : open;
+            int diveChild = -1;
+            double best = incumbent.get().cost;
+            double partial;
+            double bound;
+            int child;
+
+            if (childLevel < CITIES - 1) bounds.prepare(from, open);
+
+            //for every city not already included in the partial tour
+            for (long rest = next; rest != 0; rest &= rest - 1) {
+                int c = Long.numberOfTrailingZeros(rest);
+                partial = cost[node] + weight(from, c);
+
+                //a full tour is only compared against the current best and
+                //never queued
+                if (childLevel == CITIES - 1) {
+                    partial += weight(c, 0);
+                    if (partial < best) {
+                        int[] tour = Arrays.copyOf(tourOf(node), CITIES + 1);
+                        tour[CITIES - 1] = c;
+                        offer(partial, tour);
+                        best = incumbent.get().cost;
                     }
+                    continue;
+                }
 
-                    //after optimal cost of leaving for vertex c1 has been 
-                    //found, add it to the lower bound sum
-                    bound += best;
+                //if this partial tour has a lower bound less than the best
+                //current full tour cost it can potentially become the next
+                //optimal tour
+                bound = bounds.bound(c, partial, open & ~(1L << c), best);
+                if (bound >= best) {
+                    prunedNodes++;
+                    continue;
                 }
+                child = newNode(node, c, partial, bound,
+                        visited[node] | 1L << c);
+                if (!dive) {
+                    push(child);
+                } else if (diveChild < 0) {
+                    diveChild = child;
+                } else if (bound < lowerBound[diveChild]) {
+                    push(diveChild);
+                    diveChild = child;
+                } else {
+                    push(child);
+                }
+            }
+            if (children[node] == 0) release(node);
+            return diveChild;
+        }
+
+        /**
+         * Follow the parent indexes back to the root of the subtree, and the
+         * subtree's partial tour from there, to build the partial tour of a
+         * node.
+         */
+        private int[] tourOf (int node) {
+            int[] tour = Arrays.copyOf(prefix, level(node) + 1);
+            for (; node >= 0; node = parent[node])
+                tour[level(node)] = city[node];
+            return tour;
+        }
+
+        private int newNode (int parentNode, int newCity, double partial,
+                double bound, long cities)
+        {
+            int node;
+            if (freeCount > 0) {
+                node = free[--freeCount];
+            } else {
+                if (used == parent.length) grow();
+                node = used++;
+            }
+            createdNodes++;
+            parent[node] = parentNode;
+            city[node] = (byte) newCity;
+            cost[node] = partial;
+            lowerBound[node] = bound;
+            visited[node] = cities;
+            children[node] = 0;
+            if (parentNode >= 0) children[parentNode]++;
+            return node;
+        }
+
+        /**
+         * Hand the slot of a node back, along with every ancestor left without
+         * children by it.
+         */
+        private void release (int node) {
+            int p;
+            while (node >= 0) {
+                free[freeCount++] = node;
+                p = parent[node];
+                if (p < 0 || --children[p] > 0) return;
+                node = p;
             }
-            //lower bound has been found
-            lowerBound = bound;
-            
-            //after finding the lower bound mark the last vertex on this partial
-            //tour to be skipped (the skip array will be reused to check which
-            //vertices already exist in a given node's path)
-            skip[tour[tour.length - 1]] = true;
+        }
+
+        private void grow () {
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            city = Arrays.copyOf(city, capacity);
+            cost = Arrays.copyOf(cost, capacity);
+            lowerBound = Arrays.copyOf(lowerBound, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+            children = Arrays.copyOf(children, capacity);
+            free = Arrays.copyOf(free, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+        }
+
+        /**
+         * @return true if node a should leave the queue before node b
+         */
+        private boolean before (int a, int b) {
+            if (lowerBound[a] != lowerBound[b])
+                return lowerBound[a] < lowerBound[b];
+            return level(a) > level(b);
+        }
+
+        /**
+         * @return level at which the node is contained within the tree, with
+         * only the beginning vertex being the root
+         */
+        private int level (int node) {
+            return Long.bitCount(visited[node]) - 1;
+        }
+
+        private void push (int node) {
+            enqueuedNodes++;
+            int c = heapSize++;
+            int p;
+            if (heapSize > queuePeak) queuePeak = heapSize;
+            while (c > 0) {
+                p = (c - 1) >>> 1;
+                if (!before(node, heap[p])) break;
+                heap[c] = heap[p];
+                c = p;
+            }
+            heap[c] = node;
+        }
+
+        private int pop () {
+            int top = heap[0];
+            int node = heap[--heapSize];
+            int c = 0;
+            int child;
+            while ((child = 2 * c + 1) < heapSize) {
+                if (child + 1 < heapSize
+                        && before(heap[child + 1], heap[child]))
+                    child++;
+                if (!before(heap[child], node)) break;
+                heap[c] = heap[child];
+                c = child;
+            }
+            heap[c] = node;
+            return top;
         }
     }
 }
-
@@ -0,0 +1,225 @@
+package Main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A worker process of a {@link DistributedBranchNBoundTSP}, which connects to
+ * the coordinator, receives the instance and then searches the subtrees it
+ * is handed one at a time on a single thread. Start more workers than one
+ * per machine to use more of its processors. Exits when the coordinator
+ * stops it or goes away.
+ */
+public class BranchNBoundWorker {
+
+    private final DataInputStream IN;
+    private final DataOutputStream OUT;
+
+    //searches the subtrees, and keeps the best tour known to this worker
+    private final BranchNBoundTSP SOLVER;
+
+    //subtrees handed over and not searched yet, one without a partial tour
+    //stands for the end of the search
+    private final BlockingQueue<Subtree> subtrees = new LinkedBlockingQueue<>();
+
+    //cost of the best tour the coordinator knows about
+    private volatile double known = Double.POSITIVE_INFINITY;
+
+    //whether the coordinator asked for a subtree to be split off
+    private volatile boolean splitWanted;
+
+    /**
+     * @param args host and port the coordinator waits for workers on
+     */
+    public static void main (String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BranchNBoundWorker <host> <port>");
+            System.exit(2);
+        }
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            new BranchNBoundWorker(socket).run();
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Receive the instance and the settings to search with.
+     */
+    private BranchNBoundWorker (Socket socket) throws IOException {
+        IN = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream()));
+        OUT = new DataOutputStream(new BufferedOutputStream(
+                socket.getOutputStream()));
+        int cities = IN.readUnsignedByte();
+        double[][] matrix = new double[cities][cities];
+        for (int from = 0; from < cities; from++) {
+            for (int to = 0; to < cities; to++)
+                matrix[from][to] = IN.readDouble();
+        }
+        boolean breakSymmetry = IN.readBoolean();
+        int diveDepth = IN.readInt();
+        byte[] bound = new byte[IN.readInt()];
+        IN.readFully(bound);
+        SOLVER = new BranchNBoundTSP(matrix);
+        SOLVER.setSymmetryBreaking(breakSymmetry);
+        SOLVER.setDiveDepth(diveDepth);
+        try (ObjectInputStream objects = new ObjectInputStream(
+                new ByteArrayInputStream(bound))) {
+            objects.setObjectInputFilter(BranchNBoundWorker::filter);
+            SOLVER.setLowerBound((LowerBound) objects.readObject());
+        } catch (ClassNotFoundException x) {
+            throw new IOException("Unknown lower bound", x);
+        }
+        SOLVER.startSubtrees();
+        SOLVER.setImprovementListener(solution -> {
+            if (solution.cost < known) {
+                known = solution.cost;
+                send(() -> {
+                    OUT.writeByte(DistributedBranchNBoundTSP.INCUMBENT);
+                    OUT.writeDouble(solution.cost);
+                    DistributedBranchNBoundTSP.writeTour(OUT, solution.tour);
+                });
+            }
+        });
+    }
+
+    /**
+     * Let only lower bounds and the arrays of numbers they hold be read from
+     * the wire, nothing else the class path may hold.
+     */
+    private static ObjectInputFilter.Status filter (
+            ObjectInputFilter.FilterInfo info)
+    {
+        if (info.arrayLength() > BranchNBoundTSP.MAX_CITIES) {
+            return ObjectInputFilter.Status.REJECTED;
+        }
+        Class<?> type = info.serialClass();
+        if (type == null) return ObjectInputFilter.Status.UNDECIDED;
+        while (type.isArray()) type = type.getComponentType();
+        if (type.isPrimitive() || LowerBound.class.isAssignableFrom(type)) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        return ObjectInputFilter.Status.REJECTED;
+    }
+
+    /**
+     * Read messages on a thread of their own while searching every subtree
+     * handed over on this one, until told to stop.
+     */
+    private void run () throws InterruptedException {
+        Thread reader = new Thread(this::read, "coordinator");
+        reader.setDaemon(true);
+        reader.start();
+        Frontier frontier = new Frontier();
+        while (true) {
+            Subtree subtree = subtrees.take();
+            if (subtree.prefix == null) return;
+            long nodes = SOLVER.searchSubtree(subtree.prefix, subtree.bound,
+                    frontier);
+            send(() -> {
+                OUT.writeByte(DistributedBranchNBoundTSP.DONE);
+                OUT.writeLong(nodes);
+            });
+        }
+    }
+
+    private void read () {
+        try {
+            while (true) {
+                byte type = IN.readByte();
+                switch (type) {
+                    case DistributedBranchNBoundTSP.SUBTREE:
+                        int[] prefix = DistributedBranchNBoundTSP.readTour(IN);
+
+                        //a request which came too late for the last subtree
+                        //was answered by its DONE, and requests for this one
+                        //only follow it on the wire
+                        splitWanted = false;
+                        subtrees.add(new Subtree(prefix, IN.readDouble()));
+                        break;
+                    case DistributedBranchNBoundTSP.INCUMBENT:
+                        double cost = IN.readDouble();
+                        int[] tour = DistributedBranchNBoundTSP.readTour(IN);
+                        if (cost < known) known = cost;
+                        SOLVER.improve(cost, tour);
+                        break;
+                    case DistributedBranchNBoundTSP.SPLIT:
+                        splitWanted = true;
+                        break;
+                    case DistributedBranchNBoundTSP.STOP:
+                        subtrees.add(new Subtree(null, 0));
+                        return;
+                    default:
+                        throw new IOException("Unknown message " + type);
+                }
+            }
+        } catch (IOException x) {
+
+            //without a coordinator there is nobody to search for
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sends the front node of the search's queue back to the coordinator
+     * once it asks for one.
+     */
+    private class Frontier implements BranchNBoundTSP.Frontier {
+
+        @Override
+        public boolean wanted () {
+            return splitWanted;
+        }
+
+        @Override
+        public void split (int[] tour, double bound) {
+            splitWanted = false;
+            send(() -> {
+                OUT.writeByte(DistributedBranchNBoundTSP.SUBTREE);
+                DistributedBranchNBoundTSP.writeTour(OUT, tour);
+                OUT.writeDouble(bound);
+            });
+        }
+    }
+
+    private static class Subtree {
+
+        //partial tour starting with city 0, and its lower bound
+        private final int[] prefix;
+        private final double bound;
+
+        private Subtree (int[] prefix, double bound) {
+            this.prefix = prefix;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * Write a message and flush it, exiting if the coordinator is gone.
+     */
+    private void send (Message message) {
+        synchronized (OUT) {
+            try {
+                message.write();
+                OUT.flush();
+            } catch (IOException x) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private interface Message {
+        void write () throws IOException;
+    }
+}
@@ -0,0 +1,140 @@
+package Main;
+
+public class BruteForceTSP {
+
+    //distances between cities
+    private final DistanceProvider DISTANCES;
+
+    //saved cost of best tour found
+    private double bestWeight;
+
+    //the complete tour holding the best cost
+    private int[] bestPath;
+
+    //whether to skip the reverse of every tour, if the distances allow it
+    private boolean breakSymmetry = true;
+
+    //amount of tours compared by the last run
+    private long tours;
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances by comparing all tours on a single thread.
+     *
+     * @param distances cost of travelling between any two cities
+     */
+    public BruteForceTSP (DistanceProvider distances) {
+        DISTANCES = distances;
+    }
+
+    /**
+     * Set whether the next runs skip the reverse of every tour when the
+     * distances are the same both ways, which halves the tours compared.
+     *
+     * @param enabled true by default
+     */
+    public void setSymmetryBreaking (boolean enabled) {
+        breakSymmetry = enabled;
+    }
+
+    /**
+     * Compares every possible tour and keeps the cheapest. Tours are generated
+     * in place, in lexicographic order, over a single array, and the cost of
+     * every tour prefix is kept so that only the part of the tour which changed
+     * is summed again. Uses O(N) memory, so the limit is CPU time rather than
+     * heap size: 12 cities take a few seconds, 13 cities under a minute.
+     *
+     * With symmetric distances every tour costs the same as its reverse, so
+     * only tours visiting city 1 before city 2 are compared. Once city 2
+     * comes first, the rest of the path is put into its last permutation,
+     * skipping every tour sharing the path up to city 2 at once.
+     */
+    public void go () {
+        int cities = DISTANCES.size();
+        bestPath = new int[cities + 1];
+        tours = 0;
+        if (cities == 1) {
+            bestWeight = 0;
+            tours = 1;
+            return;
+        }
+        int[] path = new int[cities - 1];
+        for (int c = 0; c < path.length; c++) path[c] = c + 1;
+        int[] bestP = path.clone();
+        double bestW = Double.POSITIVE_INFINITY;
+        boolean mirrored = breakSymmetry && cities >= 3
+                && DISTANCES.isSymmetric();
+
+        //prefix[c] holds the cost of travelling from city 0 through path[c]
+        double[] prefix = new double[path.length];
+        int last = path.length - 1;
+        double current;
+
+        //leftmost position of the path which differs from the previous one,
+        //and from the last one compared
+        int changed = 0;
+        int stale = 0;
+
+        //position of whichever of cities 1 and 2 comes first
+        int pair = 0;
+        do {
+            stale = Math.min(stale, changed);
+            if (mirrored) {
+                if (changed <= pair) {
+                    pair = changed;
+                    while (path[pair] != 1 && path[pair] != 2) pair++;
+                }
+
+                //the path after the pivot of the last permutation step, and
+                //so after city 2, is in ascending order
+                if (path[pair] == 2) {
+                    reverse(path, pair + 1);
+                    changed = Main.nextPermutation(path, 0);
+                    continue;
+                }
+            }
+            for (int c = stale; c <= last; c++) {
+                prefix[c] = c == 0 ? weight(0, path[0])
+                        : prefix[c - 1] + weight(path[c - 1], path[c]);
+            }
+            stale = path.length;
+            tours++;
+            current = prefix[last] + weight(path[last], 0);
+            if (current < bestW) {
+                bestW = current;
+                System.arraycopy(path, 0, bestP, 0, path.length);
+            }
+            changed = Main.nextPermutation(path, 0);
+        } while (changed >= 0);
+        System.arraycopy(bestP, 0, bestPath, 1, bestP.length);
+        bestWeight = bestW;
+    }
+
+    private static void reverse (int[] elements, int from) {
+        int temp;
+        for (int lo = from, hi = elements.length - 1; lo < hi; lo++, hi--) {
+            temp = elements[lo];
+            elements[lo] = elements[hi];
+            elements[hi] = temp;
+        }
+    }
+
+    private double weight (int city1, int city2) {
+        return DISTANCES.distance(city1, city2);
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return amount of tours compared by the last run
+     */
+    public long getTours () {
+        return tours;
+    }
+}
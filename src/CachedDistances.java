@@ -0,0 +1,149 @@
+package Main;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recently used rows of the distance matrix of a large
+ * instance, computing a whole row the first time a distance from its city is
+ * asked for and dropping the least recently used row when the cache is full.
+ * Worth it when computing a single distance is expensive and the solver keeps
+ * coming back to the same cities. Calls are synchronized, the cache is shared
+ * by every thread using it.
+ */
+public class CachedDistances implements DistanceProvider {
+
+    //distances being cached
+    private final DistanceProvider EXACT;
+
+    //amount of cities
+    private final int N;
+
+    //most rows kept at once
+    private final int CAPACITY;
+
+    //row kept in every slot of the cache and the city it belongs to
+    private final double[][] rows;
+    private final int[] owner;
+
+    //slot holding the row of every city, or -1
+    private final int[] slotOf;
+
+    //slots from most to least recently used as a doubly-linked list
+    private final int[] older;
+    private final int[] newer;
+    private int newest = -1;
+    private int oldest = -1;
+
+    //amount of slots in use
+    private int used;
+
+    //lookups which found their row in the cache, and rows computed
+    private long hits;
+    private long misses;
+
+    /**
+     * @param exact distances computed on every call
+     * @param capacity most rows to keep at once
+     */
+    public CachedDistances (DistanceProvider exact, int capacity) {
+        EXACT = exact;
+        N = exact.size();
+        CAPACITY = Math.max(1, capacity);
+        rows = new double[CAPACITY][];
+        owner = new int[CAPACITY];
+        older = new int[CAPACITY];
+        newer = new int[CAPACITY];
+        slotOf = new int[N];
+        Arrays.fill(slotOf, -1);
+    }
+
+    @Override
+    public int size () {
+        return N;
+    }
+
+    @Override
+    public synchronized double distance (int from, int to) {
+        int slot = slotOf[from];
+        if (slot < 0) {
+            misses++;
+            slot = load(from);
+        } else {
+            hits++;
+            if (slot != newest) {
+                unlink(slot);
+                pushNewest(slot);
+            }
+        }
+        return rows[slot][to];
+    }
+
+    /**
+     * Compute the row of a city into a free slot, or into the least recently
+     * used one if none is free.
+     *
+     * @return slot of the row
+     */
+    private int load (int city) {
+        int slot;
+        if (used < CAPACITY) {
+            slot = used++;
+            rows[slot] = new double[N];
+        } else {
+            slot = oldest;
+            slotOf[owner[slot]] = -1;
+            unlink(slot);
+        }
+        double[] row = rows[slot];
+        for (int c = 0; c < N; c++) row[c] = EXACT.distance(city, c);
+        owner[slot] = city;
+        slotOf[city] = slot;
+        pushNewest(slot);
+        return slot;
+    }
+
+    private void unlink (int slot) {
+        if (newer[slot] >= 0) older[newer[slot]] = older[slot];
+        else newest = older[slot];
+        if (older[slot] >= 0) newer[older[slot]] = newer[slot];
+        else oldest = newer[slot];
+    }
+
+    private void pushNewest (int slot) {
+        older[slot] = newest;
+        newer[slot] = -1;
+        if (newest >= 0) newer[newest] = slot;
+        else oldest = slot;
+        newest = slot;
+    }
+
+    /**
+     * @return share of lookups which found their row in the cache
+     */
+    public synchronized double getHitRate () {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return bytes the cache takes once every slot holds a row, along with
+     * the distances it caches
+     */
+    @Override
+    public long bytes () {
+        long rowBytes = (long) CAPACITY * N * Double.BYTES;
+        long bookkeeping = 3L * CAPACITY * Integer.BYTES
+                + (long) N * Integer.BYTES;
+        return rowBytes + bookkeeping + EXACT.bytes();
+    }
+
+    @Override
+    public boolean isSymmetric () {
+        return EXACT.isSymmetric();
+    }
+
+    @Override
+    public String toString () {
+        return "cache of " + CAPACITY + " rows over " + EXACT;
+    }
+}
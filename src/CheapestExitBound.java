@@ -0,0 +1,92 @@
+package Main;
+
+/**
+ * Bounds a partial tour by its cost plus the cheapest way of leaving its last
+ * city and every city not yet on it. Appending a city c to a partial tour
+ * only changes the cheapest way of leaving the cities whose cheapest target
+ * was c, so for every remaining city the cheapest and second cheapest ways of
+ * leaving are found once per parent in O(N^2), after which the bound of each
+ * child takes O(1).
+ */
+public class CheapestExitBound implements LowerBound {
+    
+    //bumped whenever the fields sent to worker processes change
+    private static final long serialVersionUID = 1L;
+    
+    //copy of the distances, small enough with at most 64 cities to read
+    //directly in the inner loop
+    private double[][] adjMatrix;
+    
+    //indexed by city: the cheapest way of leaving it towards a city not on
+    //the parent's tour or city 0, the same but towards a city not on the tour
+    //only, and how much more leaving all other cities costs once it is
+    //appended to the tour
+    private double[] leaveAny;
+    private double[] leaveOpen;
+    private double[] delta;
+    
+    //sum of leaveAny over the cities not on the parent's tour
+    private double leaveSum;
+    
+    @Override
+    public void start (DistanceProvider distances) {
+        adjMatrix = distances.toMatrix();
+        leaveAny = new double[adjMatrix.length];
+        leaveOpen = new double[adjMatrix.length];
+        delta = new double[adjMatrix.length];
+    }
+    
+    @Override
+    public void prepare (int last, long open) {
+        long targets = open | 1L;
+        double first;
+        double second;
+        double openFirst;
+        double w;
+        int firstTarget;
+        leaveSum = 0;
+        for (long rest = open; rest != 0; rest &= rest - 1) {
+            delta[Long.numberOfTrailingZeros(rest)] = 0;
+        }
+        for (long rest = open; rest != 0; rest &= rest - 1) {
+            int c = Long.numberOfTrailingZeros(rest);
+            first = second = openFirst = Double.POSITIVE_INFINITY;
+            firstTarget = 0;
+            for (long t = targets & ~(1L << c); t != 0; t &= t - 1) {
+                int target = Long.numberOfTrailingZeros(t);
+                w = adjMatrix[c][target];
+                if (w < first) {
+                    second = first;
+                    first = w;
+                    firstTarget = target;
+                } else if (w < second) {
+                    second = w;
+                }
+                if (target != 0 && w < openFirst) openFirst = w;
+            }
+            
+            //every remaining city has to travel on to another remaining city
+            //or back to city 0
+            leaveAny[c] = first;
+            leaveSum += first;
+            
+            //once c is appended, cities which were cheapest to leave towards c
+            //have to settle for their second choice
+            if (firstTarget != 0) delta[firstTarget] += second - first;
+            
+            //the last city has to travel on to one of the remaining cities
+            leaveOpen[c] = openFirst;
+        }
+    }
+    
+    @Override
+    public double bound (int last, double partial, long open, double cutoff) {
+        return partial + leaveOpen[last] + (leaveSum - leaveAny[last]) 
+                + delta[last];
+    }
+    
+    @Override
+    public LowerBound copy () {
+        return new CheapestExitBound();
+    }
+}
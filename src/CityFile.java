@@ -0,0 +1,485 @@
+package Main;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * City coordinates read from a file into primitive arrays. Three formats are
+ * told apart by their first bytes:
+ * <ul>
+ * <li>binary, a header of {@link #HEADER_BYTES} bytes holding
+ * {@link #MAGIC}, {@link #VERSION} and the amount of cities, followed by the
+ * x coordinates of all cities and then their y coordinates as little-endian
+ * doubles, so each array is filled by a single bulk copy</li>
+ * <li>TSPLIB .tsp files of coordinates, recognized by their header</li>
+ * <li>text holding the x and y coordinate of every city separated by commas
+ * or whitespace, the format {@link Main#makeCityFile} writes</li>
+ * </ul>
+ * Text is parsed straight from the memory-mapped file, without building a
+ * string for every number.
+ */
+public class CityFile {
+
+    //"TSPB" in the first four bytes of a binary file
+    public static final int MAGIC = 0x42505354;
+
+    //version of the binary format
+    public static final int VERSION = 1;
+
+    //size of the binary header: magic, version, amount of cities and a
+    //reserved int keeping the coordinates 8 byte aligned
+    public static final int HEADER_BYTES = 16;
+
+    //most bytes of a text file mapped at once
+    private static final int CHUNK_BYTES = 1 << 30;
+
+    //longest number the text parser expects, a chunk is remapped before a
+    //number starts closer than this to its end
+    private static final int MAX_NUMBER = 64;
+
+    //powers of ten which doubles hold exactly
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int p = 1; p < POWERS_OF_TEN.length; p++) {
+            POWERS_OF_TEN[p] = POWERS_OF_TEN[p - 1] * 10;
+        }
+    }
+
+    //city coordinates
+    private final double[] xs;
+    private final double[] ys;
+
+    //distances between the cities as the file defines them
+    private final DistanceProvider distances;
+
+    //name of the format read
+    private final String format;
+
+    private CityFile (double[] xs, double[] ys, DistanceProvider distances,
+            String format)
+    {
+        this.xs = xs;
+        this.ys = ys;
+        this.distances = distances;
+        this.format = format;
+    }
+
+    /**
+     * Read the first cities of a file in any of the supported formats.
+     *
+     * @param name file to read
+     * @param amount amount of cities to read
+     *
+     * @return the cities read
+     *
+     * @throws IOException if the file can't be read, holds fewer cities or
+     * isn't in a supported format
+     */
+    public static CityFile read (String name, int amount) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(name),
+                StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+            }
+            start.flip();
+            if (start.remaining() >= Integer.BYTES && start.getInt(0) == MAGIC) {
+                return readBinary(channel, start, amount);
+            }
+            int first = 0;
+            while (first < start.limit() && isSpace(start.get(first))) first++;
+            if (first < start.limit() && Character.isLetter(start.get(first))) {
+                return readTsplib(channel, amount);
+            }
+            return readText(channel, amount);
+        }
+    }
+
+    /**
+     * Read every city of a file in any of the supported formats.
+     *
+     * @param name file to read
+     *
+     * @return the cities read
+     *
+     * @throws IOException if the file can't be read or isn't in a supported
+     * format
+     */
+    public static CityFile read (String name) throws IOException {
+        return read(name, -1);
+    }
+
+    /**
+     * Write cities in the binary format.
+     *
+     * @param name file to write, replaced if it exists
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public static void writeBinary (String name, double[] xs, double[] ys)
+            throws IOException
+    {
+        long arrayBytes = (long) xs.length * Double.BYTES;
+        try (RandomAccessFile file = new RandomAccessFile(name, "rw");
+                FileChannel channel = file.getChannel()) {
+            file.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(xs.length).putInt(0);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+            if (xs.length == 0) return;
+            channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES,
+                    arrayBytes).order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer().put(xs);
+            channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES + arrayBytes, arrayBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(ys);
+        }
+    }
+
+    private static CityFile readBinary (FileChannel channel, ByteBuffer header,
+            int amount) throws IOException
+    {
+        if (header.remaining() < HEADER_BYTES) {
+            throw new EOFException("Binary city file header is cut short");
+        }
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unknown binary city file version "
+                    + version);
+        }
+        int count = header.getInt(8);
+        if (amount < 0) amount = count;
+        if (count < amount) {
+            throw new EOFException("The file holds only " + count
+                    + " cities");
+        }
+        long arrayBytes = (long) count * Double.BYTES;
+        if (channel.size() < HEADER_BYTES + 2 * arrayBytes) {
+            throw new EOFException("Binary city file is cut short");
+        }
+        double[] xs = new double[amount];
+        double[] ys = new double[amount];
+        if (amount > 0) {
+            long bytes = (long) amount * Double.BYTES;
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(xs);
+            channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + arrayBytes, bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(ys);
+        }
+        return new CityFile(xs, ys, new CoordinateDistances(xs, ys), "binary");
+    }
+
+    private static CityFile readText (FileChannel channel, int amount)
+            throws IOException
+    {
+        MappedText text = new MappedText(channel);
+        int capacity = amount < 0 ? 16 : amount;
+        double[] xs = new double[capacity];
+        double[] ys = new double[capacity];
+        int count = 0;
+        while (amount < 0 ? text.hasNumber() : count < amount) {
+            if (count == capacity) {
+                capacity *= 2;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+            }
+            xs[count] = text.nextDouble();
+            ys[count++] = text.nextDouble();
+        }
+        if (count < capacity) {
+            xs = Arrays.copyOf(xs, count);
+            ys = Arrays.copyOf(ys, count);
+        }
+        return new CityFile(xs, ys, new CoordinateDistances(xs, ys), "text");
+    }
+
+    /**
+     * Read a TSPLIB file: header lines of "KEY : VALUE" up to the
+     * NODE_COORD_SECTION, then a line of "number x y" for every city.
+     */
+    private static CityFile readTsplib (FileChannel channel, int amount)
+            throws IOException
+    {
+        MappedText text = new MappedText(channel);
+        String type = "TSP";
+        String weights = null;
+        int dimension = -1;
+        String line;
+        while (true) {
+            line = text.nextLine();
+            if (line == null) {
+                throw new IOException("TSPLIB file has no NODE_COORD_SECTION");
+            }
+            line = line.trim();
+            if (line.startsWith("NODE_COORD_SECTION")) break;
+            if (line.startsWith("EDGE_WEIGHT_SECTION")) {
+                throw new IOException("Only TSPLIB files of coordinates are "
+                        + "supported");
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            switch (key) {
+                case "TYPE":
+                    type = value;
+                    break;
+                case "DIMENSION":
+                    dimension = Integer.parseInt(value);
+                    break;
+                case "EDGE_WEIGHT_TYPE":
+                    weights = value;
+                    break;
+                default:
+            }
+        }
+        if (!type.equals("TSP")) {
+            throw new IOException("Only symmetric TSPLIB instances are "
+                    + "supported, not " + type);
+        }
+        if (!TsplibDistances.supports(weights)) {
+            throw new IOException("Unsupported TSPLIB edge weight type "
+                    + weights);
+        }
+        if (amount < 0) {
+            if (dimension < 0) {
+                throw new IOException("TSPLIB file has no DIMENSION");
+            }
+            amount = dimension;
+        }
+        if (dimension >= 0 && dimension < amount) {
+            throw new EOFException("The file holds only " + dimension
+                    + " cities");
+        }
+        double[] xs = new double[amount];
+        double[] ys = new double[amount];
+        for (int c = 0; c < amount; c++) {
+            text.nextDouble();
+            xs[c] = text.nextDouble();
+            ys[c] = text.nextDouble();
+        }
+        return new CityFile(xs, ys, new TsplibDistances(weights, xs, ys),
+                "TSPLIB " + weights);
+    }
+
+    private static boolean isSpace (byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    public double[] getXs () {
+        return xs;
+    }
+
+    public double[] getYs () {
+        return ys;
+    }
+
+    /**
+     * @return distances between the cities as the file defines them,
+     * Euclidean unless a TSPLIB file says otherwise
+     */
+    public DistanceProvider getDistances () {
+        return distances;
+    }
+
+    /**
+     * @return name of the format the file was in
+     */
+    public String getFormat () {
+        return format;
+    }
+
+    /**
+     * @return name of the way distances follow from the coordinates, the
+     * TSPLIB edge weight type or EUCLIDEAN
+     */
+    public String getMetric () {
+        return format.startsWith("TSPLIB ") ? format.substring(7)
+                : "EUCLIDEAN";
+    }
+
+    /**
+     * Numbers and lines read straight from a memory-mapped text file, mapping
+     * at most {@link #CHUNK_BYTES} at a time.
+     */
+    private static class MappedText {
+
+        private final FileChannel channel;
+        private final long size;
+
+        //mapped part of the file, its offset in the file and the position
+        //reached within it
+        private MappedByteBuffer buffer;
+        private long base;
+        private int position;
+        private int limit;
+
+        private MappedText (FileChannel channel) throws IOException {
+            this.channel = channel;
+            size = channel.size();
+            map(0);
+        }
+
+        private void map (long offset) throws IOException {
+            base = offset;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    Math.min(CHUNK_BYTES, size - offset));
+            position = 0;
+            limit = buffer.limit();
+        }
+
+        /**
+         * @return whether bytes are left, mapping the next chunk if the
+         * current one is used up
+         */
+        private boolean available () throws IOException {
+            if (position < limit) return true;
+            if (base + limit >= size) return false;
+            map(base + limit);
+            return true;
+        }
+
+        /**
+         * Skip the separators before the next number.
+         *
+         * @return whether there is one
+         */
+        private boolean hasNumber () throws IOException {
+            while (available()) {
+                byte b = buffer.get(position);
+                if (b != ',' && !isSpace(b)) return true;
+                position++;
+            }
+            return false;
+        }
+
+        /**
+         * Parse the next number, skipping anything before it which can't
+         * start one. Numbers of up to 15 significant digits and exponents of
+         * up to 22 are converted with a single exact multiplication or
+         * division, which rounds them correctly, anything else falls back to
+         * {@link Double#parseDouble}.
+         */
+        private double nextDouble () throws IOException {
+            while (true) {
+                if (!available()) {
+                    throw new EOFException("The file holds fewer cities");
+                }
+                byte b = buffer.get(position);
+                if (b >= '0' && b <= '9' || b == '-' || b == '+' || b == '.') {
+                    break;
+                }
+                if (b != ',' && !isSpace(b)) throw unexpected();
+                position++;
+            }
+            if (limit - position < MAX_NUMBER && base + limit < size) {
+                map(base + position);
+            }
+            int start = position;
+            boolean negative = false;
+            byte b = buffer.get(position);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            boolean exact = true;
+            boolean fraction = false;
+            while (position < limit) {
+                b = buffer.get(position);
+                if (b >= '0' && b <= '9') {
+                    any = true;
+                    if (mantissa == 0 && b == '0') {
+
+                        //leading zeros are not significant
+                    } else if (digits < 15) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                    } else {
+                        exact = false;
+                    }
+                    if (fraction && exact) exponent--;
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+                position++;
+            }
+            if (!any) throw unexpected();
+            if (position < limit && (b == 'e' || b == 'E')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < limit && (buffer.get(position) == '-'
+                        || buffer.get(position) == '+')) {
+                    negativeExponent = buffer.get(position) == '-';
+                    position++;
+                }
+                int value = 0;
+                boolean expDigits = false;
+                while (position < limit && buffer.get(position) >= '0'
+                        && buffer.get(position) <= '9') {
+                    value = Math.min(100_000, value * 10
+                            + buffer.get(position) - '0');
+                    expDigits = true;
+                    position++;
+                }
+                if (!expDigits) throw unexpected();
+                exponent += negativeExponent ? -value : value;
+            }
+            if (position < limit) {
+                b = buffer.get(position);
+                if (b != ',' && !isSpace(b)) throw unexpected();
+            }
+            if (exact && exponent >= -22 && exponent <= 22) {
+                double value = exponent < 0
+                        ? mantissa / POWERS_OF_TEN[-exponent]
+                        : mantissa * POWERS_OF_TEN[exponent];
+                return negative ? -value : value;
+            }
+            byte[] bytes = new byte[position - start];
+            for (int c = 0; c < bytes.length; c++) {
+                bytes[c] = buffer.get(start + c);
+            }
+            return Double.parseDouble(new String(bytes,
+                    StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * @return the next line without its line break, or null at the end
+         * of the file
+         */
+        private String nextLine () throws IOException {
+            if (!available()) return null;
+            StringBuilder line = new StringBuilder();
+            while (available()) {
+                byte b = buffer.get(position++);
+                if (b == '\n') break;
+                if (b != '\r') line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        private IOException unexpected () {
+            return new IOException("Unexpected character at byte "
+                    + (base + position) + " of the city file");
+        }
+    }
+}
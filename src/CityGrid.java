@@ -0,0 +1,281 @@
+package Main;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid of buckets over points which come and go, for finding the
+ * points nearest to a location when a {@link KDTree}, which can only lose
+ * points, doesn't do. Cells are sized so that about two points fall into
+ * each, and a query looks at rings of cells around the location, widening
+ * until no unexplored cell can hold a closer point, so it costs about as
+ * much as the amount of points wanted. Points outside the area the grid was
+ * built over fall into its edge cells, which reach out to infinity. Once
+ * the amount of points has doubled or dropped to a quarter since the grid
+ * was built, it is built again over the points then present, which costs
+ * O(N) but is amortized over the O(N) additions or removals before it.
+ */
+public class CityGrid {
+
+    //most cells along either side
+    private static final int MAX_SIDE = 1 << 12;
+
+    //average amount of points per cell right after building
+    private static final double PER_CELL = 2;
+
+    //coordinates of every point by index, and whether it is present
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private boolean[] present = new boolean[16];
+
+    //amount of points present
+    private int count;
+
+    //amount of points present when the grid was last built
+    private int builtFor;
+
+    //left and bottom edge of the grid, width of a cell, cells along each
+    //side
+    private double minX;
+    private double minY;
+    private double cellSize;
+    private int columns;
+    private int rows;
+
+    //points in every cell, row by row, and how many
+    private int[][] cells;
+    private int[] sizes;
+
+    //cell every point is in
+    private int[] cellOf = new int[16];
+
+    //squared distances and indexes of the closest points found so far,
+    //closest first, and how many of them are wanted
+    private double[] foundDistance = new double[1];
+    private int[] foundPoint = new int[1];
+    private int foundCount;
+    private int wanted;
+
+    /**
+     * Build a grid over the given points, numbered by their position in the
+     * arrays, in O(N).
+     *
+     * @param xs x coordinate of every point
+     * @param ys y coordinate of every point
+     */
+    public CityGrid (double[] xs, double[] ys) {
+        ensureCapacity(xs.length);
+        System.arraycopy(xs, 0, x, 0, xs.length);
+        System.arraycopy(ys, 0, y, 0, ys.length);
+        Arrays.fill(present, 0, xs.length, true);
+        count = xs.length;
+        build();
+    }
+
+    /**
+     * Add a point, numbered by the caller, who reuses the numbers of
+     * removed points or continues after the last one.
+     *
+     * @param point index of the point, not present already
+     */
+    public void add (int point, double px, double py) {
+        if (point < 0 || point < x.length && present[point]) {
+            throw new IllegalArgumentException("Point " + point
+                    + " is already present");
+        }
+        ensureCapacity(point + 1);
+        x[point] = px;
+        y[point] = py;
+        present[point] = true;
+        count++;
+        if (count > 2 * builtFor) {
+            build();
+        } else {
+            store(point);
+        }
+    }
+
+    /**
+     * Remove a point, it won't be returned by later queries.
+     *
+     * @param point index of the point, must be present
+     */
+    public void remove (int point) {
+        if (point < 0 || point >= x.length || !present[point]) {
+            throw new IllegalArgumentException("Point " + point
+                    + " is not present");
+        }
+        present[point] = false;
+        count--;
+        int cell = cellOf[point];
+        int[] members = cells[cell];
+        int last = --sizes[cell];
+        for (int m = 0; m <= last; m++) {
+            if (members[m] == point) {
+                members[m] = members[last];
+                break;
+            }
+        }
+        if (4 * count < builtFor) build();
+    }
+
+    /**
+     * @return amount of points present
+     */
+    public int size () {
+        return count;
+    }
+
+    /**
+     * Find the points nearest to a location among those present.
+     *
+     * @param into array to fill with the indexes of the nearest points,
+     * closest first, as many as it has room for
+     *
+     * @return amount of points found, less than the array length only if
+     * fewer points are present
+     */
+    public int nearest (double px, double py, int[] into) {
+        wanted = into.length;
+        foundCount = 0;
+        if (foundDistance.length < wanted) {
+            foundDistance = new double[wanted];
+            foundPoint = new int[wanted];
+        }
+        if (wanted == 0 || count == 0) return 0;
+        int column = column(px);
+        int row = row(py);
+        for (int ring = 0; ; ring++) {
+            int left = column - ring;
+            int right = column + ring;
+            int bottom = row - ring;
+            int top = row + ring;
+            int firstColumn = Math.max(left, 0);
+            int lastColumn = Math.min(right, columns - 1);
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                if (bottom >= 0) search(px, py, bottom * columns + c);
+                if (ring > 0 && top < rows) search(px, py, top * columns + c);
+            }
+            int lastRow = Math.min(top - 1, rows - 1);
+            for (int r = Math.max(bottom + 1, 0); r <= lastRow; r++) {
+                if (left >= 0) search(px, py, r * columns + left);
+                if (ring > 0 && right < columns) {
+                    search(px, py, r * columns + right);
+                }
+            }
+
+            //nearest any cell outside the rings so far can be, through the
+            //sides of the rings which haven't reached the grid edge yet
+            double reach = Double.POSITIVE_INFINITY;
+            if (left > 0) {
+                reach = Math.min(reach, px - (minX + left * cellSize));
+            }
+            if (right < columns - 1) {
+                reach = Math.min(reach, minX + (right + 1) * cellSize - px);
+            }
+            if (bottom > 0) {
+                reach = Math.min(reach, py - (minY + bottom * cellSize));
+            }
+            if (top < rows - 1) {
+                reach = Math.min(reach, minY + (top + 1) * cellSize - py);
+            }
+            if (reach == Double.POSITIVE_INFINITY) break;
+            if (foundCount == wanted
+                    && reach * reach >= foundDistance[wanted - 1]) break;
+        }
+        System.arraycopy(foundPoint, 0, into, 0, foundCount);
+        return foundCount;
+    }
+
+    /**
+     * Offer every point of a cell to the closest points found so far.
+     */
+    private void search (double px, double py, int cell) {
+        int[] members = cells[cell];
+        for (int m = 0; m < sizes[cell]; m++) {
+            int point = members[m];
+            double dx = px - x[point];
+            double dy = py - y[point];
+            found(point, dx * dx + dy * dy);
+        }
+    }
+
+    /**
+     * Insert a point into the closest points found so far if it is closer
+     * than one of them.
+     */
+    private void found (int point, double distance) {
+        if (foundCount == wanted && distance >= foundDistance[wanted - 1]) {
+            return;
+        }
+        int c = foundCount < wanted ? foundCount++ : wanted - 1;
+        for (; c > 0 && foundDistance[c - 1] > distance; c--) {
+            foundDistance[c] = foundDistance[c - 1];
+            foundPoint[c] = foundPoint[c - 1];
+        }
+        foundDistance[c] = distance;
+        foundPoint[c] = point;
+    }
+
+    /**
+     * Size the grid to the points present and their bounding box, and put
+     * every point into its cell.
+     */
+    private void build () {
+        builtFor = Math.max(count, 1);
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < x.length; p++) {
+            if (!present[p]) continue;
+            minX = Math.min(minX, x[p]);
+            maxX = Math.max(maxX, x[p]);
+            minY = Math.min(minY, y[p]);
+            maxY = Math.max(maxY, y[p]);
+        }
+        if (count == 0) minX = maxX = minY = maxY = 0;
+        double width = Math.max(maxX - minX, maxY - minY);
+        double area = Math.max((maxX - minX) * (maxY - minY),
+                width * width / MAX_SIDE);
+        cellSize = Math.sqrt(area * PER_CELL / builtFor);
+        if (!(cellSize > 0)) cellSize = 1;
+        columns = (int) Math.min(MAX_SIDE, (maxX - minX) / cellSize + 1);
+        rows = (int) Math.min(MAX_SIDE, (maxY - minY) / cellSize + 1);
+        cells = new int[columns * rows][];
+        sizes = new int[columns * rows];
+        for (int p = 0; p < x.length; p++) {
+            if (present[p]) store(p);
+        }
+    }
+
+    private void store (int point) {
+        int cell = row(y[point]) * columns + column(x[point]);
+        int[] members = cells[cell];
+        if (members == null) {
+            members = cells[cell] = new int[4];
+        } else if (sizes[cell] == members.length) {
+            members = cells[cell] = Arrays.copyOf(members, 2 * members.length);
+        }
+        members[sizes[cell]++] = point;
+        cellOf[point] = cell;
+    }
+
+    private int column (double px) {
+        return (int) Math.max(0, Math.min(columns - 1,
+                Math.floor((px - minX) / cellSize)));
+    }
+
+    private int row (double py) {
+        return (int) Math.max(0, Math.min(rows - 1,
+                Math.floor((py - minY) / cellSize)));
+    }
+
+    private void ensureCapacity (int points) {
+        if (points <= x.length) return;
+        int capacity = Math.max(points, 2 * x.length);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        present = Arrays.copyOf(present, capacity);
+        cellOf = Arrays.copyOf(cellOf, capacity);
+    }
+}
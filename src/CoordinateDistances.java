@@ -0,0 +1,63 @@
+package Main;
+
+/**
+ * Euclidean distances computed from the city coordinates on every call,
+ * which takes no memory beyond the coordinates themselves.
+ */
+public class CoordinateDistances implements DistanceProvider {
+
+    //city coordinates
+    private final double[] X;
+    private final double[] Y;
+
+    /**
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public CoordinateDistances (double[] xs, double[] ys) {
+        X = xs;
+        Y = ys;
+    }
+
+    @Override
+    public int size () {
+        return X.length;
+    }
+
+    @Override
+    public double distance (int from, int to) {
+        double dx = X[from] - X[to];
+        double dy = Y[from] - Y[to];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Compute the distances from a city to the cities 0 to count - 1 with
+     * {@link DistanceKernels#SELECTED}, rounded to floats.
+     *
+     * @param into array to write the distance to city c at offset + c
+     */
+    public void row (int from, int count, float[] into, int offset) {
+        DistanceKernels.SELECTED.row(X, Y, from, count, into, offset);
+    }
+
+    @Override
+    public double[][] toMatrix () {
+        int n = X.length;
+        double[][] matrix = new double[n][n];
+        for (int from = 0; from < n; from++) {
+            DistanceKernels.SELECTED.row(X, Y, from, n, matrix[from], 0);
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isSymmetric () {
+        return true;
+    }
+
+    @Override
+    public String toString () {
+        return "distances computed from coordinates";
+    }
+}
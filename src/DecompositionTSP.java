@@ -0,0 +1,447 @@
+package Main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Partition and merge for very large instances. The cities are split in two
+ * at the median of whichever coordinate they spread further along, and each
+ * half again, until every part holds at most the cluster size. Every part is
+ * solved on its own, with {@link BranchNBoundTSP} if it is small enough to
+ * be solved exactly and with {@link LinKernighanTSP} otherwise, and the two
+ * tours of every split are stitched into one by removing an edge from each
+ * and joining their ends, choosing the cheapest such pair among the cities
+ * closest to the splitting line. Halves are solved and stitched in parallel
+ * on a fork/join pool, and nothing takes more than O(N) memory, so millions
+ * of cities fit. Optionally, Lin-Kernighan chains started only from the
+ * cities around the seams then smooth out what the stitching left.
+ */
+public class DecompositionTSP {
+
+    //most cities of a part by default
+    public static final int DEFAULT_CLUSTER_SIZE = 1000;
+
+    //cities on either side of a split whose tour edges are tried for
+    //stitching
+    private static final int STITCH_CANDIDATES = 24;
+
+    //city coordinates
+    private final double[] X;
+    private final double[] Y;
+
+    //amount of cities
+    private final int N;
+
+    //most cities of a part
+    private int clusterSize = DEFAULT_CLUSTER_SIZE;
+
+    //amount of threads solving parts at once
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    //whether the seams are improved after stitching
+    private boolean boundaryPass = true;
+
+    //every city, reordered so that every part is a range of it
+    private int[] cities;
+
+    //whether every city is one of those next to a seam
+    private boolean[] atSeam;
+
+    //Lin-Kernighan candidates of every city as found within its part, for
+    //the boundary pass, and whether a closer city may lie outside the part
+    private int[] candidates;
+    private boolean[] stale;
+
+    //amount of parts of the last run
+    private int parts;
+
+    //saved cost of the tour before and after the seams were improved
+    private double stitchedWeight;
+    private double bestWeight;
+
+    //the complete tour found
+    private int[] bestPath;
+
+    /**
+     * Prepare to solve the TSP over the given cities.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public DecompositionTSP (double[] xs, double[] ys) {
+        X = xs;
+        Y = ys;
+        N = xs.length;
+    }
+
+    /**
+     * @param size most cities of a part, {@link #DEFAULT_CLUSTER_SIZE} by
+     * default. Parts of at most {@link Solver#EXACT_CITIES} cities are solved
+     * exactly.
+     */
+    public void setClusterSize (int size) {
+        clusterSize = Math.max(2, size);
+    }
+
+    /**
+     * @param amount amount of threads solving parts at once, the processor
+     * count by default
+     */
+    public void setThreads (int amount) {
+        threads = Math.max(1, amount);
+    }
+
+    /**
+     * @param improveSeams whether to improve the tour around the seams
+     * between parts after stitching, true by default
+     */
+    public void setBoundaryPass (boolean improveSeams) {
+        boundaryPass = improveSeams;
+    }
+
+    /**
+     * Split the cities, solve and stitch the parts, then improve the seams.
+     * O(N log N) efficiency, most of it spent solving the parts.
+     */
+    public void go () {
+        cities = new int[N];
+        for (int c = 0; c < N; c++) cities[c] = c;
+        atSeam = new boolean[N];
+        if (boundaryPass && N > clusterSize) {
+            candidates = new int[N * Math.min(
+                    LinKernighanTSP.DEFAULT_CANDIDATES, N - 1)];
+            stale = new boolean[N];
+        }
+        parts = 0;
+        int[] cycle;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            cycle = pool.invoke(new Part(0, N));
+        } finally {
+            pool.shutdown();
+        }
+        int[] path = new int[N + 1];
+        int start = 0;
+        while (cycle[start] != 0) start++;
+        for (int c = 0; c < N; c++) path[c] = cycle[(start + c) % N];
+        stitchedWeight = cost(path);
+
+        if (boundaryPass && parts > 1 && N >= 5) {
+            int seams = 0;
+            for (int c = 0; c < N; c++) if (atSeam[c]) seams++;
+            int[] focus = new int[seams];
+            seams = 0;
+            for (int c = 0; c < N; c++) if (atSeam[c]) focus[seams++] = c;
+            LinKernighanTSP search = new LinKernighanTSP(X, Y,
+                    LinKernighanTSP.DEFAULT_CANDIDATES, candidates, stale);
+            search.setStartTour(path);
+            search.setFocus(focus);
+            search.go();
+            path = search.getTour();
+        }
+        bestPath = path;
+        bestWeight = cost(path);
+        cities = null;
+        atSeam = null;
+        candidates = null;
+        stale = null;
+    }
+
+    /**
+     * The cities in a range of {@link #cities}, solved as a cycle of city
+     * indexes.
+     */
+    private class Part extends RecursiveTask<int[]> {
+
+        private final int from;
+        private final int to;
+
+        Part (int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute () {
+            if (to - from <= clusterSize) return solve(from, to);
+            double minX = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int c = from; c < to; c++) {
+                int city = cities[c];
+                minX = Math.min(minX, X[city]);
+                maxX = Math.max(maxX, X[city]);
+                minY = Math.min(minY, Y[city]);
+                maxY = Math.max(maxY, Y[city]);
+            }
+            double[] along = maxX - minX >= maxY - minY ? X : Y;
+            int middle = (from + to) >>> 1;
+            select(along, from, to, middle);
+            double line = along[cities[middle]];
+
+            Part first = new Part(from, middle);
+            first.fork();
+            int[] second = new Part(middle, to).compute();
+            return stitch(first.join(), second, along, line);
+        }
+    }
+
+    /**
+     * Reorder a range of {@link #cities} so that the city at position k is
+     * the one which would be there if the range were sorted by the given
+     * coordinate, with no city before it greater and none after it smaller.
+     */
+    private void select (double[] along, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while (lo < hi) {
+            double pivot = along[cities[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (along[cities[i]] < pivot) i++;
+                while (along[cities[j]] > pivot) j--;
+                if (i <= j) {
+                    int city = cities[i];
+                    cities[i++] = cities[j];
+                    cities[j--] = city;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    /**
+     * @return a cycle through the cities of a range
+     */
+    private int[] solve (int from, int to) {
+        int n = to - from;
+        synchronized (this) {
+            parts++;
+        }
+        int[] cycle = new int[n];
+        if (n <= 3) {
+            System.arraycopy(cities, from, cycle, 0, n);
+            if (stale != null) {
+                for (int c = from; c < to; c++) stale[cities[c]] = true;
+            }
+            return cycle;
+        }
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int c = 0; c < n; c++) {
+            xs[c] = X[cities[from + c]];
+            ys[c] = Y[cities[from + c]];
+        }
+        int[] tour;
+        if (n <= Solver.EXACT_CITIES) {
+            BranchNBoundTSP solver = new BranchNBoundTSP(
+                    new CoordinateDistances(xs, ys));
+            solver.setThreads(1);
+            solver.go();
+            tour = solver.getTour();
+            if (stale != null) {
+                for (int c = from; c < to; c++) stale[cities[c]] = true;
+            }
+        } else {
+            LinKernighanTSP solver = new LinKernighanTSP(xs, ys);
+            solver.go();
+            tour = solver.getTour();
+            if (candidates != null) keepCandidates(from, to, xs, ys,
+                    solver.getCandidates());
+        }
+        for (int c = 0; c < n; c++) cycle[c] = cities[from + tour[c]];
+        return cycle;
+    }
+
+    /**
+     * Keep the candidates a part's Lin-Kernighan found for its cities, and
+     * mark those cities stale which are closer to the part's bounding box
+     * than to their farthest candidate, so a city outside the part may be
+     * closer.
+     *
+     * @param xs x coordinate of every city of the part
+     * @param ys y coordinate of every city of the part
+     * @param found candidates of the cities of the part by their index in it
+     */
+    private void keepCandidates (int from, int to, double[] xs, double[] ys,
+            int[] found)
+    {
+        int k = LinKernighanTSP.DEFAULT_CANDIDATES;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < xs.length; c++) {
+            minX = Math.min(minX, xs[c]);
+            maxX = Math.max(maxX, xs[c]);
+            minY = Math.min(minY, ys[c]);
+            maxY = Math.max(maxY, ys[c]);
+        }
+        for (int c = 0; c < xs.length; c++) {
+            int city = cities[from + c];
+            for (int n = 0; n < k; n++) {
+                candidates[city * k + n] = cities[from + found[c * k + n]];
+            }
+            int farthest = found[c * k + k - 1];
+            double dx = xs[c] - xs[farthest];
+            double dy = ys[c] - ys[farthest];
+            double reach = Math.sqrt(dx * dx + dy * dy);
+            double border = Math.min(Math.min(xs[c] - minX, maxX - xs[c]),
+                    Math.min(ys[c] - minY, maxY - ys[c]));
+            stale[city] = border < reach;
+        }
+    }
+
+    /**
+     * Join two cycles on either side of a line into one, removing an edge
+     * from each and adding the two edges which connect their ends. Only
+     * edges of the {@link #STITCH_CANDIDATES} cities of each cycle closest to
+     * the line are tried, and the cities of the edges replaced are marked as
+     * at a seam.
+     *
+     * @param along coordinate the cities were split by
+     * @param line value of that coordinate the cycles were split at
+     */
+    private int[] stitch (int[] a, int[] b, double[] along, double line) {
+        int[] nearA = closest(a, along, line);
+        int[] nearB = closest(b, along, line);
+        int na = a.length;
+        int nb = b.length;
+
+        //edge (a[i], a[i + 1]) and edge (b[j], b[j + 1]) to remove, and
+        //whether a[i] is joined to b[j + 1] rather than b[j]
+        int bestI = 0;
+        int bestJ = 0;
+        boolean crossed = false;
+        double best = Double.POSITIVE_INFINITY;
+        for (int pa = 0; pa < 2 * nearA.length; pa++) {
+
+            //both edges of every city close to the line
+            int i = nearA[pa >> 1];
+            if ((pa & 1) == 1) i = i == 0 ? na - 1 : i - 1;
+            int a1 = a[i];
+            int a2 = a[i + 1 == na ? 0 : i + 1];
+            double removedA = distance(a1, a2);
+            for (int pb = 0; pb < 2 * nearB.length; pb++) {
+                int j = nearB[pb >> 1];
+                if ((pb & 1) == 1) j = j == 0 ? nb - 1 : j - 1;
+                int b1 = b[j];
+                int b2 = b[j + 1 == nb ? 0 : j + 1];
+                double removed = removedA + distance(b1, b2);
+                double straight = distance(a1, b1) + distance(a2, b2)
+                        - removed;
+                double cross = distance(a1, b2) + distance(a2, b1) - removed;
+                if (straight < best) {
+                    best = straight;
+                    bestI = i;
+                    bestJ = j;
+                    crossed = false;
+                }
+                if (cross < best) {
+                    best = cross;
+                    bestI = i;
+                    bestJ = j;
+                    crossed = true;
+                }
+            }
+        }
+        for (int c : nearA) atSeam[a[c]] = true;
+        for (int c : nearB) atSeam[b[c]] = true;
+
+        //walk a from a[i + 1] around to a[i], then b from the city joined to
+        //a[i] around to the one joined to a[i + 1]
+        int[] joined = new int[na + nb];
+        int k = 0;
+        for (int c = 1; c <= na; c++) joined[k++] = a[(bestI + c) % na];
+        if (crossed) {
+            for (int c = 1; c <= nb; c++) joined[k++] = b[(bestJ + c) % nb];
+        } else {
+            for (int c = 0; c < nb; c++) {
+                joined[k++] = b[(bestJ - c + nb) % nb];
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * @return positions in a cycle of its {@link #STITCH_CANDIDATES} cities
+     * closest to a line, in no particular order
+     */
+    private static int[] closest (int[] cycle, double[] along, double line) {
+        int amount = Math.min(STITCH_CANDIDATES, cycle.length);
+        int[] found = new int[amount];
+        double[] gaps = new double[amount];
+        int count = 0;
+
+        //the farthest one found so far sits at found[0], as in a max-heap
+        for (int c = 0; c < cycle.length; c++) {
+            double gap = Math.abs(along[cycle[c]] - line);
+            if (count < amount) {
+                int child = count++;
+                while (child > 0 && gaps[(child - 1) / 2] < gap) {
+                    gaps[child] = gaps[(child - 1) / 2];
+                    found[child] = found[(child - 1) / 2];
+                    child = (child - 1) / 2;
+                }
+                gaps[child] = gap;
+                found[child] = c;
+            } else if (gap < gaps[0]) {
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= amount) break;
+                    if (child + 1 < amount && gaps[child + 1] > gaps[child]) {
+                        child++;
+                    }
+                    if (gaps[child] <= gap) break;
+                    gaps[parent] = gaps[child];
+                    found[parent] = found[child];
+                    parent = child;
+                }
+                gaps[parent] = gap;
+                found[parent] = c;
+            }
+        }
+        return found;
+    }
+
+    private double distance (int a, int b) {
+        double dx = X[a] - X[b];
+        double dy = Y[a] - Y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double cost (int[] path) {
+        double sum = 0;
+        for (int c = 1; c < path.length; c++)
+            sum += distance(path[c - 1], path[c]);
+        return sum;
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return cost of the tour of the last run as stitched, before the seams
+     * were improved
+     */
+    public double getStitchedCost () {
+        return stitchedWeight;
+    }
+
+    /**
+     * @return amount of parts the cities were split into by the last run
+     */
+    public int getParts () {
+        return parts;
+    }
+}
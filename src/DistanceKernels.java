@@ -0,0 +1,55 @@
+package Main;
+
+/**
+ * The loop which fills a row of a distance matrix, the distances from one
+ * city to many others. It comes in two versions, {@link ScalarKernels}
+ * which handles one city at a time and {@link VectorKernels} which handles
+ * as many as fit into a SIMD register with the incubating Vector API. Both
+ * give exactly the same results. {@link #SELECTED} is picked when first
+ * used: the vector version if the JVM was started with
+ * {@code --add-modules jdk.incubator.vector} and has SIMD registers of more
+ * than one double, the scalar version otherwise or if the system property
+ * {@value #PROPERTY} is "scalar".
+ */
+public interface DistanceKernels {
+
+    //system property which forces the scalar kernels when set to "scalar"
+    String PROPERTY = "tsp.kernels";
+
+    //kernels picked for this JVM
+    DistanceKernels SELECTED = choose();
+
+    /**
+     * Compute the Euclidean distances from a city to the cities 0 to
+     * count - 1.
+     *
+     * @param into array to write the distance to city c at offset + c
+     */
+    void row (double[] xs, double[] ys, int from, int count, double[] into,
+            int offset);
+
+    /**
+     * Compute the Euclidean distances from a city to the cities 0 to
+     * count - 1, rounded to floats.
+     *
+     * @param into array to write the distance to city c at offset + c
+     */
+    void row (double[] xs, double[] ys, int from, int count, float[] into,
+            int offset);
+
+    /**
+     * @return the vector kernels if the JVM supports them, the scalar ones
+     * otherwise or if {@value #PROPERTY} is "scalar"
+     */
+    static DistanceKernels choose () {
+        if (!"scalar".equals(System.getProperty(PROPERTY))) {
+            try {
+                if (VectorKernels.LANES > 1) return new VectorKernels();
+            } catch (LinkageError x) {
+
+                //the JVM was started without jdk.incubator.vector
+            }
+        }
+        return new ScalarKernels();
+    }
+}
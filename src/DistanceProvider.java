@@ -0,0 +1,112 @@
+package Main;
+
+/**
+ * Cost of travelling between any two cities. Solvers take one of these
+ * instead of a full adjacency matrix, so how the distances are stored can be
+ * picked to suit the amount of cities: a triangular matrix of floats while it
+ * fits in memory, and computing or caching them on demand past that.
+ */
+public interface DistanceProvider {
+
+    //share of the free heap a triangular matrix may take
+    int HEAP_SHARE = 4;
+
+    //most cities a triangular matrix is built for, past this only the
+    //O(N log N) heuristics are practical and they look up each distance a
+    //few times at most, far fewer than it takes to fill the matrix
+    int MATRIX_CITIES = 10_000;
+
+    /**
+     * @return amount of cities
+     */
+    int size ();
+
+    /**
+     * @return cost of travelling from one city to another
+     */
+    double distance (int from, int to);
+
+    /**
+     * @return whether travelling between any two cities costs the same both
+     * ways, which lets the exact solvers skip every tour whose reverse they
+     * already have. Checks every pair in O(N^2) unless the way the
+     * distances are kept guarantees it.
+     */
+    default boolean isSymmetric () {
+        int n = size();
+        for (int from = 1; from < n; from++) {
+            for (int to = 0; to < from; to++) {
+                if (distance(from, to) != distance(to, from)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return bytes of memory the distances take, or may grow to, on top of
+     * the city coordinates, 0 for distances computed on every call
+     */
+    default long bytes () {
+        return 0;
+    }
+
+    /**
+     * Copy every distance into a full matrix, for solvers whose city limit
+     * keeps it small and whose inner loops would otherwise pay for going
+     * through the provider on every lookup.
+     *
+     * @return a 2D array of costs where the first dimension accesses the city
+     * being traveled from and the second the city being traveled to
+     */
+    default double[][] toMatrix () {
+        int n = size();
+        double[][] matrix = new double[n][n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) matrix[from][to] = distance(from, to);
+        }
+        return matrix;
+    }
+
+    /**
+     * Pick how to store the distances of the given cities: a triangular
+     * matrix if there are at most {@link #MATRIX_CITIES} cities and it fits
+     * into a quarter of the free heap, otherwise computing
+     * them from the coordinates on every call, which for Euclidean distances
+     * is cheaper than any cache.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    static DistanceProvider forCities (double[] xs, double[] ys) {
+        return choose(new CoordinateDistances(xs, ys));
+    }
+
+    /**
+     * Pick how to store distances which can be computed on demand: a
+     * triangular matrix if there are at most {@link #MATRIX_CITIES} cities
+     * and it fits into a quarter of the free heap, otherwise the coordinates
+     * themselves if the distances are plain Euclidean ones, otherwise a cache
+     * of as many rows as fit there.
+     *
+     * @param exact symmetric distances computed on every call
+     */
+    static DistanceProvider choose (DistanceProvider exact) {
+        long free = freeHeap() / HEAP_SHARE;
+        int n = exact.size();
+        if (n <= MATRIX_CITIES && TriangularDistances.bytes(n) <= free) {
+            return new TriangularDistances(exact);
+        }
+        if (exact instanceof CoordinateDistances) return exact;
+        long rows = free / ((long) n * Double.BYTES);
+        return new CachedDistances(exact, (int) Math.max(1, Math.min(n, rows)));
+    }
+
+    /**
+     * @return bytes of heap which can still be allocated
+     */
+    static long freeHeap () {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - runtime.totalMemory()
+                + runtime.freeMemory();
+    }
+}
@@ -0,0 +1,569 @@
+package Main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Branch-and-bound split across worker processes, which may run on other
+ * machines, for instances too slow for the threads of a single one. This
+ * coordinator keeps a queue of open subtrees, every one a partial tour and
+ * its lower bound, and hands them out one at a time to the
+ * {@link BranchNBoundWorker}s connected to it over sockets. Every worker
+ * searches its subtree best-first and diving like {@link BranchNBoundTSP}
+ * does, and reports when it is done. Whenever workers sit idle with the
+ * queue empty, busy workers are asked to split the front node of their
+ * own queue off and send it back as a new subtree. Every tour cheaper than
+ * the best so far is sent to the coordinator and from there to every other
+ * worker, so all of them prune against the best tour found anywhere.
+ *
+ * The workers search with the same distances, lower bound, dive depth and
+ * symmetry breaking as the coordinator was given, and the coordinator starts
+ * from the same tour {@link BranchNBoundTSP#go} starts from, so the optimum
+ * found is the same, and the tour too unless several tours share that cost.
+ *
+ * Messages start with a byte telling their kind. Subtrees take a byte per
+ * city of their partial tour and 8 bytes for the bound, tours a byte per
+ * city and 8 bytes for the cost, so no more than a few hundred bytes go
+ * over the wire per subtree however large it is.
+ */
+public class DistributedBranchNBoundTSP {
+
+    //amount of worker processes by default
+    public static final int DEFAULT_WORKERS = 2;
+
+    //milliseconds to wait for the workers to connect and to exit
+    private static final int CONNECT_TIMEOUT = 60_000;
+    private static final int EXIT_TIMEOUT = 5_000;
+
+    //kinds of messages, the first byte of every message
+
+    //a subtree to search, to the workers, or split off, from them
+    static final byte SUBTREE = 1;
+
+    //a tour cheaper than any before it, both ways
+    static final byte INCUMBENT = 2;
+
+    //to a busy worker, split a subtree off
+    static final byte SPLIT = 3;
+
+    //to the workers, the search is over
+    static final byte STOP = 4;
+
+    //from a worker, done searching its subtree, with the nodes it expanded
+    static final byte DONE = 5;
+
+    //distances between cities
+    private final DistanceProvider DISTANCES;
+
+    //amount of cities on the graph
+    private final int CITIES;
+
+    //way of computing the lower bounds of partial tours
+    private LowerBound bounds = new CheapestExitBound();
+
+    //levels a worker dives from every node it takes off its queue
+    private int diveDepth;
+
+    //tour to start with as the best one, or null, and whether to build one
+    //when not given it
+    private int[] startTour;
+    private boolean warmStart = true;
+
+    //whether to skip the reverse of every tour, if the distances allow it
+    private boolean breakSymmetry = true;
+
+    //amount of workers, whether to start them as processes on this machine,
+    //and the port to wait for them on, 0 for any free port
+    private int workers = DEFAULT_WORKERS;
+    private boolean localWorkers = true;
+    private int port;
+
+    //saved cost of best tour found
+    private double bestWeight;
+
+    //the complete tour holding the best cost
+    private int[] bestPath;
+
+    //amount of nodes expanded by all workers, subtrees handed out to them
+    //and subtrees they split off, in the last run
+    private long expandedNodes;
+    private int subtrees;
+    private int splits;
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances using branch-and-bound across worker processes.
+     *
+     * @param distances cost of travelling between any two of at most
+     * {@link BranchNBoundTSP#MAX_CITIES} cities
+     */
+    public DistributedBranchNBoundTSP (DistanceProvider distances) {
+        if (distances.size() > BranchNBoundTSP.MAX_CITIES) {
+            throw new IllegalArgumentException("Branch-and-bound handles at "
+                    + "most " + BranchNBoundTSP.MAX_CITIES + " cities");
+        }
+        DISTANCES = distances;
+        CITIES = distances.size();
+        diveDepth = CITIES;
+    }
+
+    /**
+     * @param bound lower bound the workers use, see
+     * {@link BranchNBoundTSP#setLowerBound}
+     */
+    public void setLowerBound (LowerBound bound) {
+        bounds = bound;
+    }
+
+    /**
+     * @param depth levels the workers dive, see
+     * {@link BranchNBoundTSP#setDiveDepth}
+     */
+    public void setDiveDepth (int depth) {
+        diveDepth = depth;
+    }
+
+    /**
+     * @param path tour to start with as the best one, see
+     * {@link BranchNBoundTSP#setStartTour}
+     *
+     * @throws IllegalArgumentException if the path is not a tour over all
+     * cities beginning and ending at city 0
+     */
+    public void setStartTour (int[] path) {
+        startTour = path == null ? null
+                : BranchNBoundTSP.checkedTour(path, CITIES);
+    }
+
+    /**
+     * @param enabled whether to build a tour to start with when not given
+     * one, see {@link BranchNBoundTSP#setWarmStart}
+     */
+    public void setWarmStart (boolean enabled) {
+        warmStart = enabled;
+    }
+
+    /**
+     * @param enabled whether the workers skip the reverse of every tour, see
+     * {@link BranchNBoundTSP#setSymmetryBreaking}
+     */
+    public void setSymmetryBreaking (boolean enabled) {
+        breakSymmetry = enabled;
+    }
+
+    /**
+     * @param amount amount of workers to search with, at least 1,
+     * {@link #DEFAULT_WORKERS} by default
+     */
+    public void setWorkers (int amount) {
+        workers = Math.max(1, amount);
+    }
+
+    /**
+     * Set whether the next runs start their workers as processes on this
+     * machine, which connect over the loopback interface. Otherwise they
+     * wait for workers started elsewhere with
+     * {@code java -cp <classpath> Main.BranchNBoundWorker <host> <port>} to
+     * connect on the port given by {@link #setPort}.
+     *
+     * @param local true by default
+     */
+    public void setLocalWorkers (boolean local) {
+        localWorkers = local;
+    }
+
+    /**
+     * @param number port to wait for the workers on, 0 by default for any
+     * free port, which only suits local workers
+     */
+    public void setPort (int number) {
+        port = number;
+    }
+
+    /**
+     * Start or wait for the workers, hand the root of the search tree to
+     * the first of them and keep every worker busy until no subtree is
+     * left, then stop them.
+     */
+    public void go () {
+        expandedNodes = 0;
+        subtrees = 0;
+        splits = 0;
+        bestWeight = Double.POSITIVE_INFINITY;
+        bestPath = null;
+
+        //a single city is already a full tour
+        if (CITIES == 1) {
+            bestWeight = 0;
+            bestPath = new int[2];
+            return;
+        }
+        if (startTour != null) {
+            bestPath = startTour.clone();
+            bestWeight = WarmStart.cost(DISTANCES, bestPath);
+        } else if (warmStart) {
+            bestPath = WarmStart.tour(DISTANCES,
+                    CITIES >= 3 && DISTANCES.isSymmetric());
+            bestWeight = WarmStart.cost(DISTANCES, bestPath);
+        }
+        BlockingQueue<Message> inbox = new LinkedBlockingQueue<>();
+        List<Link> links = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port, workers,
+                localWorkers ? InetAddress.getLoopbackAddress() : null)) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            if (localWorkers) {
+                String java = Paths.get(System.getProperty("java.home"),
+                        "bin", "java").toString();
+                for (int w = 0; w < workers; w++) {
+                    processes.add(new ProcessBuilder(java, "-cp",
+                            System.getProperty("java.class.path"),
+                            BranchNBoundWorker.class.getName(),
+                            InetAddress.getLoopbackAddress().getHostAddress(),
+                            String.valueOf(server.getLocalPort()))
+                            .inheritIO().start());
+                }
+            }
+            byte[] instance = instance();
+            for (int w = 0; w < workers; w++) {
+                Link link = new Link(w, server.accept(), inbox);
+                links.add(link);
+                link.send(instance);
+                if (bestPath != null) link.sendTour(bestWeight, bestPath);
+                link.listen();
+            }
+            coordinate(links, inbox);
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Link link : links) link.close();
+            for (Process process : processes) {
+                try {
+                    if (!process.waitFor(EXIT_TIMEOUT, TimeUnit.MILLISECONDS))
+                        process.destroyForcibly();
+                } catch (InterruptedException x) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hand out subtrees, cheapest bound first, to idle workers, and ask busy
+     * workers for more once the queue runs dry, until all workers are done
+     * and nothing is left to hand out.
+     */
+    private void coordinate (List<Link> links, BlockingQueue<Message> inbox)
+            throws IOException, InterruptedException
+    {
+        PriorityQueue<Message> open = new PriorityQueue<>(
+                Comparator.comparingDouble(subtree -> subtree.value));
+        open.add(new Message(-1, SUBTREE, new int[]{0}, 0, 0));
+        int busy = 0;
+        int asked = 0;
+        while (true) {
+            for (Link link : links) {
+                if (link.busy) continue;
+
+                //subtrees which can't beat the best tour anymore are dropped
+                Message next;
+                do {
+                    next = open.poll();
+                } while (next != null && next.value >= bestWeight);
+                if (next == null) break;
+                link.sendSubtree(next.tour, next.value);
+                link.busy = true;
+                busy++;
+                subtrees++;
+            }
+            if (busy == 0) break;
+
+            //one split per idle worker, from workers not asked already
+            for (Link link : links) {
+                if (!open.isEmpty() || asked >= links.size() - busy) break;
+                if (link.busy && !link.asked) {
+                    link.sendSplit();
+                    link.asked = true;
+                    asked++;
+                }
+            }
+
+            Message message = inbox.take();
+            Link from = links.get(message.worker);
+            switch (message.type) {
+                case INCUMBENT:
+
+                    //anyone may connect to a coordinator waiting for remote
+                    //workers, so only its own cost of a real tour counts
+                    int[] tour;
+                    try {
+                        tour = BranchNBoundTSP.checkedTour(message.tour,
+                                CITIES);
+                    } catch (IllegalArgumentException x) {
+                        throw new IOException("Worker " + message.worker
+                                + " sent no tour", x);
+                    }
+                    double cost = WarmStart.cost(DISTANCES, tour);
+                    if (cost < bestWeight) {
+                        bestWeight = cost;
+                        bestPath = tour;
+                        for (Link link : links) {
+                            if (link != from)
+                                link.sendTour(bestWeight, bestPath);
+                        }
+                    }
+                    break;
+                case SUBTREE:
+                    open.add(message);
+                    splits++;
+                    if (from.asked) {
+                        from.asked = false;
+                        asked--;
+                    }
+                    break;
+                case DONE:
+                    expandedNodes += message.nodes;
+                    from.busy = false;
+                    busy--;
+                    if (from.asked) {
+                        from.asked = false;
+                        asked--;
+                    }
+                    break;
+                default:
+                    throw new IOException("Lost worker " + message.worker,
+                            message.failure);
+            }
+        }
+        for (Link link : links) link.sendStop();
+    }
+
+    /**
+     * @return what every worker is sent first: the amount of cities, every
+     * distance, the search settings and the lower bound, serialized
+     */
+    private byte[] instance () throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(CITIES);
+        for (int from = 0; from < CITIES; from++) {
+            for (int to = 0; to < CITIES; to++)
+                out.writeDouble(DISTANCES.distance(from, to));
+        }
+        out.writeBoolean(breakSymmetry);
+        out.writeInt(diveDepth);
+        ByteArrayOutputStream bound = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(bound)) {
+            objects.writeObject(bounds.copy());
+        }
+        out.writeInt(bound.size());
+        bound.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a tour or partial tour as its length and a byte per city.
+     */
+    static void writeTour (DataOutputStream out, int[] tour)
+            throws IOException
+    {
+        out.writeByte(tour.length);
+        for (int city : tour) out.writeByte(city);
+    }
+
+    static int[] readTour (DataInputStream in) throws IOException {
+        int[] tour = new int[in.readUnsignedByte()];
+        for (int c = 0; c < tour.length; c++) tour[c] = in.readUnsignedByte();
+        return tour;
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return amount of nodes expanded by all workers in the last run
+     */
+    public long getExpandedNodes () {
+        return expandedNodes;
+    }
+
+    /**
+     * @return amount of subtrees handed out to workers in the last run
+     */
+    public int getSubtrees () {
+        return subtrees;
+    }
+
+    /**
+     * @return amount of subtrees workers split off in the last run
+     */
+    public int getSplits () {
+        return splits;
+    }
+
+    /**
+     * A message from a worker, or an open subtree, or the worker's
+     * connection failing.
+     */
+    private static class Message {
+
+        private final int worker;
+        private final byte type;
+
+        //tour or partial tour, its cost or bound, and nodes expanded
+        private final int[] tour;
+        private final double value;
+        private final long nodes;
+
+        private final IOException failure;
+
+        private Message (int worker, byte type, int[] tour, double value,
+                long nodes)
+        {
+            this.worker = worker;
+            this.type = type;
+            this.tour = tour;
+            this.value = value;
+            this.nodes = nodes;
+            failure = null;
+        }
+
+        private Message (int worker, IOException failure) {
+            this.worker = worker;
+            type = 0;
+            tour = null;
+            value = 0;
+            nodes = 0;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Connection to one worker. Only the coordinating thread writes to it,
+     * and a thread of its own reads every message into the inbox.
+     */
+    private static class Link {
+
+        private final int worker;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final BlockingQueue<Message> inbox;
+
+        //whether the worker is searching a subtree, and has been asked to
+        //split one off since it last sent one
+        private boolean busy;
+        private boolean asked;
+
+        private Link (int worker, Socket socket, BlockingQueue<Message> inbox)
+                throws IOException
+        {
+            this.worker = worker;
+            this.socket = socket;
+            this.inbox = inbox;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(
+                    socket.getOutputStream()));
+        }
+
+        private void listen () {
+            Thread reader = new Thread(this::read, "worker " + worker);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void read () {
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    switch (type) {
+                        case INCUMBENT:
+                            double cost = in.readDouble();
+                            inbox.add(new Message(worker, type, readTour(in),
+                                    cost, 0));
+                            break;
+                        case SUBTREE:
+                            int[] tour = readTour(in);
+                            inbox.add(new Message(worker, type, tour,
+                                    in.readDouble(), 0));
+                            break;
+                        case DONE:
+                            inbox.add(new Message(worker, type, null, 0,
+                                    in.readLong()));
+                            break;
+                        default:
+                            throw new IOException("Unknown message " + type);
+                    }
+                }
+            } catch (IOException x) {
+                inbox.add(new Message(worker, x));
+            }
+        }
+
+        private void send (byte[] bytes) throws IOException {
+            out.write(bytes);
+            out.flush();
+        }
+
+        private void sendSubtree (int[] tour, double bound)
+                throws IOException
+        {
+            out.writeByte(SUBTREE);
+            writeTour(out, tour);
+            out.writeDouble(bound);
+            out.flush();
+        }
+
+        private void sendTour (double cost, int[] tour) throws IOException {
+            out.writeByte(INCUMBENT);
+            out.writeDouble(cost);
+            writeTour(out, tour);
+            out.flush();
+        }
+
+        private void sendSplit () throws IOException {
+            out.writeByte(SPLIT);
+            out.flush();
+        }
+
+        private void sendStop () throws IOException {
+            out.writeByte(STOP);
+            out.flush();
+        }
+
+        private void close () {
+            try {
+                socket.close();
+            } catch (IOException x) {
+            }
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package Main;
+
+import java.util.Arrays;
+
+/**
+ * A solved tour kept up to date while cities are added, removed and moved, so
+ * a stop list which changes a few cities at a time doesn't need solving from
+ * scratch. The tour is a doubly linked list, the candidate neighbors of every
+ * city are kept in a {@link CityGrid}, and each change costs about as much as
+ * the part of the tour around it: an added city goes in where it lengthens
+ * the tour least next to one of its candidates, a removed city's neighbors
+ * are joined, and then 2-opt and Or-opt moves start from the cities whose
+ * edges changed and spread only as far as they keep improving the tour. A
+ * 2-opt move reverses at most {@link #MAX_REVERSAL} cities, otherwise it is
+ * skipped, which keeps a move from costing O(N). Distances are Euclidean,
+ * as with {@link LinKernighanTSP}.
+ *
+ * Cities are numbered the way they were given, and added cities get the
+ * numbers of removed ones first, then the numbers after the last one.
+ */
+public class DynamicTSP {
+
+    //amount of candidate neighbors per city
+    public static final int CANDIDATES = LinKernighanTSP.DEFAULT_CANDIDATES;
+
+    //most cities a 2-opt move reverses
+    public static final int MAX_REVERSAL = 100;
+
+    //longest segment Or-opt moves
+    private static final int MAX_SEGMENT = 3;
+
+    //smallest gain a move needs, anything less is rounding error
+    private static final double EPSILON = 1e-9;
+
+    //city coordinates by city number, and whether a city is on the tour
+    private double[] x;
+    private double[] y;
+    private boolean[] present;
+
+    //amount of cities on the tour
+    private int count;
+
+    //amount of city numbers used so far, and the numbers of removed cities
+    //to be used again
+    private int used;
+    private int[] free;
+    private int freeCount;
+
+    //cities on the tour to find candidates among
+    private final CityGrid grid;
+
+    //the candidates of every city, closest first, city c's at
+    //candidates[c * CANDIDATES] on, -1 after the last if there are fewer
+    private int[] candidates;
+
+    //nearest cities of a query, one more than the candidates for the city
+    //itself
+    private final int[] nearest = new int[CANDIDATES + 1];
+
+    //cities near a removed city, which may have had it as a candidate
+    private final int[] around = new int[2 * CANDIDATES];
+
+    //neighbors of every city along the tour, and the tour cost
+    private int[] next;
+    private int[] previous;
+    private double cost;
+
+    //queue of cities whose don't-look bit is clear
+    private int[] queue;
+    private int head;
+    private int queued;
+    private boolean[] inQueue;
+
+    //moves which improved the tour during the last change
+    private int lastMoves;
+
+    /**
+     * Solve the TSP over the given cities with {@link LinKernighanTSP} and
+     * keep the tour for changing.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public DynamicTSP (double[] xs, double[] ys) {
+        this(xs, ys, null, null);
+    }
+
+    /**
+     * Keep a tour over the given cities for changing.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param path a tour over all cities beginning and ending at the same
+     * city like the solvers return, or null to solve them with
+     * {@link LinKernighanTSP}
+     * @param found the candidates of every city, as
+     * {@link LinKernighanTSP#getCandidates} returns them for
+     * {@link #CANDIDATES} candidates, or null to find them
+     */
+    public DynamicTSP (double[] xs, double[] ys, int[] path, int[] found) {
+        int n = xs.length;
+        if (path == null && n > 0) {
+            LinKernighanTSP solver = new LinKernighanTSP(xs, ys, CANDIDATES,
+                    found);
+            solver.go();
+            path = solver.getTour();
+            found = solver.getCandidates();
+        }
+        int capacity = Math.max(16, n);
+        x = Arrays.copyOf(xs, capacity);
+        y = Arrays.copyOf(ys, capacity);
+        present = new boolean[capacity];
+        Arrays.fill(present, 0, n, true);
+        count = used = n;
+        free = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        queue = new int[capacity];
+        inQueue = new boolean[capacity];
+        candidates = new int[capacity * CANDIDATES];
+        grid = new CityGrid(xs, ys);
+        if (found != null && found.length == n * CANDIDATES) {
+            System.arraycopy(found, 0, candidates, 0, found.length);
+        } else {
+            for (int c = 0; c < n; c++) findCandidates(c);
+        }
+        for (int p = 0; p < n; p++) {
+            int city = path[p];
+            int following = path[(p + 1) % n];
+            next[city] = following;
+            previous[following] = city;
+            cost += distance(city, following);
+        }
+    }
+
+    /**
+     * Add a city and improve the tour around it.
+     *
+     * @return number of the city
+     */
+    public int add (double cx, double cy) {
+        int city = freeCount > 0 ? free[--freeCount] : used++;
+        ensureCapacity(used);
+        lastMoves = 0;
+        place(city, cx, cy);
+        optimize();
+        return city;
+    }
+
+    /**
+     * Remove a city and improve the tour where it was.
+     *
+     * @param city number of a city on the tour
+     */
+    public void remove (int city) {
+        check(city);
+        lastMoves = 0;
+        detach(city);
+        free[freeCount++] = city;
+        optimize();
+    }
+
+    /**
+     * Move a city to another location, keeping its number, and improve the
+     * tour where it was and where it is now.
+     *
+     * @param city number of a city on the tour
+     */
+    public void move (int city, double cx, double cy) {
+        check(city);
+        lastMoves = 0;
+        detach(city);
+        place(city, cx, cy);
+        optimize();
+    }
+
+    private void check (int city) {
+        if (!contains(city)) {
+            throw new IllegalArgumentException("City " + city
+                    + " is not on the tour");
+        }
+    }
+
+    /**
+     * Put a city onto the tour between the two neighboring cities where it
+     * costs least, looking only at the tour edges of its candidates.
+     */
+    private void place (int city, double cx, double cy) {
+        x[city] = cx;
+        y[city] = cy;
+        present[city] = true;
+        count++;
+        grid.add(city, cx, cy);
+        findCandidates(city);
+        int base = city * CANDIDATES;
+        for (int k = 0; k < CANDIDATES && candidates[base + k] >= 0; k++) {
+            offer(candidates[base + k], city);
+        }
+        if (count == 1) {
+            next[city] = previous[city] = city;
+            return;
+        }
+        int bestA = -1;
+        double bestAdded = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < CANDIDATES; k++) {
+            int c = candidates[base + k];
+            if (c < 0) break;
+            for (int side = 0; side < 2; side++) {
+                int a = side == 0 ? previous[c] : c;
+                int b = next[a];
+                double added = distance(a, city) + distance(city, b)
+                        - distance(a, b);
+                if (added < bestAdded) {
+                    bestAdded = added;
+                    bestA = a;
+                }
+            }
+        }
+        int bestB = next[bestA];
+        next[bestA] = city;
+        previous[city] = bestA;
+        next[city] = bestB;
+        previous[bestB] = city;
+        cost += bestAdded;
+        push(bestA);
+        push(city);
+        push(bestB);
+    }
+
+    /**
+     * Take a city off the tour, joining its neighbors, and find candidates
+     * again for the cities near it which had it as one.
+     */
+    private void detach (int city) {
+        int a = previous[city];
+        int b = next[city];
+        cost += distance(a, b) - distance(a, city) - distance(city, b);
+        next[a] = b;
+        previous[b] = a;
+        present[city] = false;
+        count--;
+        grid.remove(city);
+        int amount = grid.nearest(x[city], y[city], around);
+        for (int f = 0; f < amount; f++) {
+            int base = around[f] * CANDIDATES;
+            for (int k = 0; k < CANDIDATES; k++) {
+                if (candidates[base + k] == city) {
+                    findCandidates(around[f]);
+                    break;
+                }
+            }
+        }
+        Arrays.fill(candidates, city * CANDIDATES, city * CANDIDATES
+                + CANDIDATES, -1);
+        if (count > 0) {
+            push(a);
+            push(b);
+        }
+    }
+
+    /**
+     * Find the candidates of a city among the cities on the tour, its
+     * nearest neighbors.
+     */
+    private void findCandidates (int city) {
+        int amount = grid.nearest(x[city], y[city], nearest);
+        int base = city * CANDIDATES;
+        int k = 0;
+        for (int f = 0; f < amount && k < CANDIDATES; f++) {
+            if (nearest[f] != city) candidates[base + k++] = nearest[f];
+        }
+        for (; k < CANDIDATES; k++) candidates[base + k] = -1;
+    }
+
+    /**
+     * Make a city a candidate of another city if it is nearer than one of
+     * its candidates.
+     */
+    private void offer (int to, int city) {
+        int base = to * CANDIDATES;
+        double d = distance(to, city);
+        int k = CANDIDATES - 1;
+        int last = candidates[base + k];
+        if (last >= 0 && present[last] && distance(to, last) <= d) return;
+        for (int c = 0; c < CANDIDATES; c++) {
+            if (candidates[base + c] == city) return;
+        }
+        for (; k > 0; k--) {
+            int before = candidates[base + k - 1];
+            if (before >= 0 && present[before] && distance(to, before) <= d) {
+                break;
+            }
+            candidates[base + k] = before;
+        }
+        candidates[base + k] = city;
+    }
+
+    /**
+     * Apply improving moves starting from the cities in the queue until it
+     * is empty.
+     */
+    private void optimize () {
+        if (count < 5) {
+            while (queued > 0) {
+                inQueue[queue[head]] = false;
+                head = (head + 1) % queue.length;
+                queued--;
+            }
+            return;
+        }
+        int city;
+        while (queued > 0) {
+            city = queue[head];
+            head = (head + 1) % queue.length;
+            queued--;
+            inQueue[city] = false;
+            if (!present[city]) continue;
+            while (twoOpt(city) || orOpt(city)) {
+                lastMoves++;
+                push(city);
+            }
+        }
+    }
+
+    /**
+     * Try replacing an edge of a city and an edge of one of its candidates
+     * with the edge between them and the edge between their other ends.
+     *
+     * @return true if the tour was improved
+     */
+    private boolean twoOpt (int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            int b = direction == 0 ? next[a] : previous[a];
+            double removed = distance(a, b);
+            for (int n = a * CANDIDATES; n < a * CANDIDATES + CANDIDATES; n++) {
+                int c = candidates[n];
+                if (c < 0) break;
+                if (!present[c]) continue;
+
+                //candidates are sorted, no further one can be closer than b
+                double gain = removed - distance(a, c);
+                if (gain <= EPSILON) break;
+                int d = direction == 0 ? next[c] : previous[c];
+                if (c == b || d == a) continue;
+                gain += distance(c, d) - distance(b, d);
+                if (gain <= EPSILON) continue;
+
+                //a b ... c d becomes a c ... b d, or b a ... d c becomes
+                //b d ... a c, reversing whichever side is short enough
+                boolean done = direction == 0
+                        ? reverse(b, c) || reverse(d, a)
+                        : reverse(a, d) || reverse(c, b);
+                if (done) {
+                    cost -= gain;
+                    push(b);
+                    push(c);
+                    push(d);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reverse the path from one city along the tour to another if it has at
+     * most {@link #MAX_REVERSAL} cities.
+     *
+     * @return whether the path was reversed
+     */
+    private boolean reverse (int from, int to) {
+        int length = 1;
+        for (int c = from; c != to; c = next[c]) {
+            if (++length > MAX_REVERSAL) return false;
+        }
+        int before = previous[from];
+        int after = next[to];
+        int c = from;
+        while (true) {
+            int following = next[c];
+            next[c] = previous[c];
+            previous[c] = following;
+            if (c == to) break;
+            c = following;
+        }
+        next[before] = to;
+        previous[to] = before;
+        next[from] = after;
+        previous[after] = from;
+        return true;
+    }
+
+    /**
+     * Try moving a segment of up to {@link #MAX_SEGMENT} cities starting at a
+     * city to between a candidate of one of its ends and the next or previous
+     * city of that candidate, in either orientation.
+     *
+     * @return true if the tour was improved
+     */
+    private boolean orOpt (int first) {
+        int last = first;
+        for (int length = 1; length <= MAX_SEGMENT; length++) {
+            if (length > 1) last = next[last];
+            int before = previous[first];
+            int after = next[last];
+            if (after == before || last == before) return false;
+
+            //gained by closing the gap the segment leaves
+            double removed = distance(before, first) + distance(last, after)
+                    - distance(before, after);
+            if (removed <= EPSILON) continue;
+            for (int end = 0; end < 2; end++) {
+                int city = end == 0 ? first : last;
+                for (int n = city * CANDIDATES; n < city * CANDIDATES
+                        + CANDIDATES; n++) {
+                    int c = candidates[n];
+                    if (c < 0) break;
+                    if (!present[c]) continue;
+                    if (distance(city, c) >= removed) break;
+                    if (inSegment(c, first, length)) continue;
+                    if (tryInsert(first, last, length, before, after, c,
+                            next[c], removed)
+                            || tryInsert(first, last, length, before, after,
+                                    previous[c], c, removed))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the segment from first to last between cities p and q, p being
+     * followed by q, if that improves the tour.
+     *
+     * @return true if the segment was moved
+     */
+    private boolean tryInsert (int first, int last, int length, int before,
+            int after, int p, int q, double removed)
+    {
+        if (inSegment(p, first, length) || inSegment(q, first, length)) {
+            return false;
+        }
+        double forward = distance(p, first) + distance(last, q);
+        double backward = distance(p, last) + distance(first, q);
+        double gain = removed - Math.min(forward, backward) + distance(p, q);
+        if (gain <= EPSILON) return false;
+        next[before] = after;
+        previous[after] = before;
+        if (forward <= backward) {
+            next[p] = first;
+            previous[first] = p;
+            next[last] = q;
+            previous[q] = last;
+        } else {
+            int c = first;
+            while (true) {
+                int following = next[c];
+                next[c] = previous[c];
+                previous[c] = following;
+                if (c == last) break;
+                c = following;
+            }
+            next[p] = last;
+            previous[last] = p;
+            next[first] = q;
+            previous[q] = first;
+        }
+        cost -= gain;
+        push(before);
+        push(after);
+        push(p);
+        push(q);
+        push(last);
+        return true;
+    }
+
+    private boolean inSegment (int city, int first, int length) {
+        int c = first;
+        for (int s = 0; s < length; s++) {
+            if (c == city) return true;
+            c = next[c];
+        }
+        return false;
+    }
+
+    private void push (int city) {
+        if (inQueue[city]) return;
+        inQueue[city] = true;
+        queue[(head + queued++) % queue.length] = city;
+    }
+
+    private void ensureCapacity (int cities) {
+        int capacity = x.length;
+        if (cities <= capacity) return;
+        int grown = Math.max(cities, 2 * capacity);
+        x = Arrays.copyOf(x, grown);
+        y = Arrays.copyOf(y, grown);
+        present = Arrays.copyOf(present, grown);
+        free = Arrays.copyOf(free, grown);
+        next = Arrays.copyOf(next, grown);
+        previous = Arrays.copyOf(previous, grown);
+        candidates = Arrays.copyOf(candidates, grown * CANDIDATES);
+        inQueue = Arrays.copyOf(inQueue, grown);
+
+        //the queue is empty between changes
+        queue = new int[grown];
+        head = 0;
+    }
+
+    private double distance (int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return whether a city number belongs to a city on the tour
+     */
+    public boolean contains (int city) {
+        return city >= 0 && city < used && present[city];
+    }
+
+    /**
+     * @return amount of cities on the tour
+     */
+    public int size () {
+        return count;
+    }
+
+    /**
+     * @return the tour beginning and ending at the lowest numbered city on
+     * it, in O(N)
+     */
+    public int[] getTour () {
+        int[] path = new int[count == 0 ? 0 : count + 1];
+        if (count == 0) return path;
+        int start = 0;
+        while (!present[start]) start++;
+        int city = start;
+        for (int p = 0; p < count; p++) {
+            path[p] = city;
+            city = next[city];
+        }
+        path[count] = start;
+        return path;
+    }
+
+    /**
+     * @return cost of the tour, kept up to date with every change rather
+     * than summed again
+     */
+    public double getCost () {
+        return cost;
+    }
+
+    /**
+     * @return amount of moves which improved the tour after the last change
+     */
+    public int getLastMoves () {
+        return lastMoves;
+    }
+}
@@ -0,0 +1,158 @@
+package Main;
+
+/**
+ * Bounds a partial tour like {@link OneTreeBound}, but with edge penalties
+ * chosen by Held and Karp's subgradient optimization: cities with more than
+ * two 1-tree edges get their edges made more expensive and leaves get them
+ * made cheaper, pushing the 1-tree towards a tour and its cost towards the
+ * cost of the optimal tour. The penalties are optimized once for the whole
+ * graph when a search starts and then refined for a few iterations on every
+ * partial tour.
+ */
+public class HeldKarpBound extends OneTreeBound {
+    
+    //version of the serialized form, apart from the one of the 1-tree
+    //bound's fields
+    private static final long serialVersionUID = 1L;
+    
+    //iterations spent on the whole graph when a search starts
+    private final int ROOT_ITERATIONS;
+    
+    //iterations spent on every partial tour
+    private final int NODE_ITERATIONS;
+    
+    //best penalties found for the whole graph
+    private double[] rootPenalty;
+    
+    /**
+     * Creates a bound spending 50 iterations per city on the whole graph and
+     * 10 on every partial tour.
+     */
+    public HeldKarpBound () {
+        this(-1, 10);
+    }
+    
+    /**
+     * @param rootIterations subgradient iterations spent on the whole graph
+     * when a search starts, or -1 for 50 per city
+     * @param nodeIterations subgradient iterations spent on every partial
+     * tour
+     */
+    public HeldKarpBound (int rootIterations, int nodeIterations) {
+        ROOT_ITERATIONS = rootIterations;
+        NODE_ITERATIONS = nodeIterations;
+    }
+    
+    @Override
+    public void start (DistanceProvider distances) {
+        super.start(distances);
+        int n = distances.size();
+        rootPenalty = new double[n];
+        if (n < 3) return;
+        int iterations = ROOT_ITERATIONS < 0 ? 50 * n : ROOT_ITERATIONS;
+        long open = (n == Long.SIZE ? -1L : (1L << n) - 1) & ~1L;
+        ascend(0, 0, open, nearestNeighborCost(), iterations, true);
+    }
+    
+    @Override
+    public double bound (int last, double partial, long open, double cutoff) {
+        for (long rest = open; rest != 0; rest &= rest - 1) {
+            int c = Long.numberOfTrailingZeros(rest);
+            penalty[c] = rootPenalty[c];
+        }
+        if (cutoff == Double.POSITIVE_INFINITY) 
+            return partial + oneTree(last, open);
+        return ascend(last, partial, open, cutoff, 
+                Math.max(1, NODE_ITERATIONS), false);
+    }
+    
+    @Override
+    public LowerBound copy () {
+        return new HeldKarpBound(ROOT_ITERATIONS, NODE_ITERATIONS);
+    }
+    
+    /**
+     * Improve the penalties by subgradient optimization, stepping each
+     * penalty by the amount its city's 1-tree degree differs from 2, scaled
+     * by how far the bound is from 'upper'.
+     *
+     * @param last last city on the partial tour
+     * @param partial cost of the partial tour
+     * @param open bitmask of the cities not on the partial tour
+     * @param upper cost of a known full tour, the optimization stops once the
+     * bound reaches it
+     * @param iterations most 1-trees to compute
+     * @param keep whether to save the best penalties found as the root 
+     * penalties
+     *
+     * @return the best bound found
+     */
+    private double ascend (int last, double partial, long open, double upper, 
+            int iterations, boolean keep) 
+    {
+        double best = Double.NEGATIVE_INFINITY;
+        double value;
+        double step;
+        int norm;
+        int d;
+        
+        //the step scale is halved whenever the bound stops improving
+        double scale = 2;
+        int patience = Math.max(5, Long.bitCount(open) / 4);
+        int stalled = 0;
+        for (int i = 0; i < iterations; i++) {
+            value = partial + oneTree(last, open);
+            if (value > best) {
+                best = value;
+                stalled = 0;
+                if (keep) System.arraycopy(penalty, 0, rootPenalty, 0, 
+                        penalty.length);
+            } else if (++stalled >= patience) {
+                scale /= 2;
+                stalled = 0;
+            }
+            if (best >= upper) break;
+            norm = 0;
+            for (long rest = open; rest != 0; rest &= rest - 1) {
+                d = degree[Long.numberOfTrailingZeros(rest)] - 2;
+                norm += d * d;
+            }
+            
+            //every remaining city has two edges, the 1-tree is a path
+            if (norm == 0) break;
+            step = scale * (upper - value) / norm;
+            for (long rest = open; rest != 0; rest &= rest - 1) {
+                int c = Long.numberOfTrailingZeros(rest);
+                penalty[c] += step * (degree[c] - 2);
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * @return cost of the tour built by always travelling to the closest
+     * city not yet visited
+     */
+    private double nearestNeighborCost () {
+        int n = adjMatrix.length;
+        boolean[] out = new boolean[n];
+        out[0] = true;
+        int current = 0;
+        int next = 0;
+        double sum = 0;
+        double best;
+        for (int c1 = 1; c1 < n; c1++) {
+            best = Double.POSITIVE_INFINITY;
+            for (int c2 = 1; c2 < n; c2++) {
+                if (!out[c2] && adjMatrix[current][c2] < best) {
+                    best = adjMatrix[current][c2];
+                    next = c2;
+                }
+            }
+            sum += best;
+            current = next;
+            out[current] = true;
+        }
+        return sum + adjMatrix[current][0];
+    }
+}
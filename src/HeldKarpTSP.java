@@ -0,0 +1,362 @@
+package Main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class HeldKarpTSP {
+
+    //largest amount of cities whose subsets fit into an int bitmask
+    public static final int MAX_CITIES = Integer.SIZE;
+
+    //amount of subsets a single task fills in
+    private static final long TASK_SUBSETS = 1 << 12;
+
+    //bytes per table buffer, a single buffer can't exceed 2 GB
+    private static final int CHUNK_BYTES = 1 << 30;
+
+    //entries of the cost table per buffer
+    private static final int COST_CHUNK = CHUNK_BYTES / Double.BYTES;
+
+    //distances between cities
+    private final DistanceProvider DISTANCES;
+
+    //amount of worker threads to fill the tables with
+    private final int PARALLELISM;
+
+    //amount of cities other than city 0, subsets are taken of these with
+    //bit j of a subset standing for city j + 1
+    private final int SIZE;
+
+    //tables larger than this many bytes are memory mapped from a temporary
+    //file instead of being allocated off-heap
+    private long offHeapLimit = Runtime.getRuntime().maxMemory() / 2;
+
+    //saved cost of best tour found
+    private double bestWeight;
+
+    //the complete tour holding the best cost
+    private int[] bestPath;
+
+    //size of both tables of the last run in bytes
+    private long tableBytes;
+
+    //whether the tables of the last run were memory mapped
+    private boolean mapped;
+
+    //cost of the cheapest path from city 0 through every city of a subset
+    //ending at city j + 1, at index subset * SIZE + j
+    private DoubleBuffer[] cost;
+
+    //bit of the city visited right before the end of that path, or -1 if it
+    //is city 0
+    private ByteBuffer[] previous;
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given adjacency
+     * matrix by dynamic programming, using one worker per available
+     * processor.
+     *
+     * @param adjacencyMatrix a 2D array of costs where the first dimension
+     * would access the city being traveled from and the second the city being
+     * traveled to, for at most {@link #MAX_CITIES} cities
+     */
+    public HeldKarpTSP (double[][] adjacencyMatrix) {
+        this(adjacencyMatrix, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given adjacency
+     * matrix by dynamic programming.
+     *
+     * @param adjacencyMatrix a 2D array of costs where the first dimension
+     * would access the city being traveled from and the second the city being
+     * traveled to, for at most {@link #MAX_CITIES} cities
+     * @param parallelism amount of worker threads to fill the tables with
+     */
+    public HeldKarpTSP (double[][] adjacencyMatrix, int parallelism) {
+        this(new MatrixDistances(adjacencyMatrix), parallelism);
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances by dynamic programming, using one worker per available
+     * processor.
+     *
+     * @param distances cost of travelling between any two of at most
+     * {@link #MAX_CITIES} cities
+     */
+    public HeldKarpTSP (DistanceProvider distances) {
+        this(distances, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances by dynamic programming.
+     *
+     * @param distances cost of travelling between any two of at most
+     * {@link #MAX_CITIES} cities
+     * @param parallelism amount of worker threads to fill the tables with
+     */
+    public HeldKarpTSP (DistanceProvider distances, int parallelism) {
+        if (distances.size() > MAX_CITIES) {
+            throw new IllegalArgumentException("Held-Karp handles at most "
+                    + MAX_CITIES + " cities");
+        }
+        DISTANCES = distances;
+        PARALLELISM = parallelism;
+        SIZE = distances.size() - 1;
+    }
+
+    /**
+     * Set how large the tables may get before they are memory mapped from a
+     * temporary file instead of being allocated off-heap.
+     *
+     * @param bytes largest off-heap table size, the default is half of the
+     * maximum heap size
+     */
+    public void setOffHeapLimit (long bytes) {
+        offHeapLimit = bytes;
+    }
+
+    /**
+     * Fill the tables one subset size at a time, every subset of a size
+     * depending only on subsets one city smaller, so each size is split
+     * across the workers. The tour is then followed back from the full set
+     * through the table of previous cities.
+     */
+    public void go () {
+        if (SIZE == 0) {
+            bestWeight = 0;
+            bestPath = new int[2];
+            return;
+        }
+        long entries = (1L << SIZE) * SIZE;
+        tableBytes = entries * (Double.BYTES + 1);
+        mapped = tableBytes > offHeapLimit;
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            if (mapped) {
+                File file = File.createTempFile("heldkarp", ".table");
+                try {
+                    cost = asDoubles(map(file, entries * Double.BYTES, 0));
+                    previous = map(file, entries, entries * Double.BYTES);
+                } finally {
+
+                    //the mappings keep the space until they are collected,
+                    //and only some systems let a mapped file be deleted
+                    if (!file.delete()) file.deleteOnExit();
+                }
+            } else {
+                cost = asDoubles(allocate(entries * Double.BYTES));
+                previous = allocate(entries);
+            }
+            for (int size = 1; size <= SIZE; size++) {
+                pool.invoke(new LayerTask(1, 1L << SIZE, size));
+            }
+            followBack();
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        } finally {
+            pool.shutdown();
+            cost = null;
+            previous = null;
+        }
+    }
+
+    /**
+     * Fill in the table entries of one subset.
+     */
+    private void fill (int subset) {
+        double best;
+        double current;
+        int bestK;
+        for (int rest = subset; rest != 0; rest &= rest - 1) {
+            int j = Integer.numberOfTrailingZeros(rest);
+            long index = (long) subset * SIZE + j;
+            int without = subset & ~(1 << j);
+            if (without == 0) {
+                setCost(index, DISTANCES.distance(0, j + 1));
+                setPrevious(index, -1);
+                continue;
+            }
+            best = Double.POSITIVE_INFINITY;
+            bestK = 0;
+            long base = (long) without * SIZE;
+            for (int k = without; k != 0; k &= k - 1) {
+                int c = Integer.numberOfTrailingZeros(k);
+                current = getCost(base + c)
+                        + DISTANCES.distance(c + 1, j + 1);
+                if (current < best) {
+                    best = current;
+                    bestK = c;
+                }
+            }
+            setCost(index, best);
+            setPrevious(index, bestK);
+        }
+    }
+
+    /**
+     * Find the cheapest way back to city 0 from the full set and rebuild the
+     * tour from the table of previous cities.
+     */
+    private void followBack () {
+        int subset = (int) ((1L << SIZE) - 1);
+        double current;
+        int j = 0;
+        bestWeight = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < SIZE; c++) {
+            current = getCost((long) subset * SIZE + c)
+                    + DISTANCES.distance(c + 1, 0);
+            if (current < bestWeight) {
+                bestWeight = current;
+                j = c;
+            }
+        }
+        bestPath = new int[SIZE + 2];
+        int k;
+        for (int position = SIZE; position > 0; position--) {
+            bestPath[position] = j + 1;
+            k = getPrevious((long) subset * SIZE + j);
+            subset &= ~(1 << j);
+            j = k;
+        }
+    }
+
+    private double getCost (long index) {
+        return cost[(int) (index / COST_CHUNK)].get((int) (index % COST_CHUNK));
+    }
+
+    private void setCost (long index, double value) {
+        cost[(int) (index / COST_CHUNK)].put((int) (index % COST_CHUNK), value);
+    }
+
+    private int getPrevious (long index) {
+        return previous[(int) (index / CHUNK_BYTES)]
+                .get((int) (index % CHUNK_BYTES));
+    }
+
+    private void setPrevious (long index, int value) {
+        previous[(int) (index / CHUNK_BYTES)]
+                .put((int) (index % CHUNK_BYTES), (byte) value);
+    }
+
+    private static ByteBuffer[] allocate (long bytes) {
+        ByteBuffer[] chunks = new ByteBuffer[(int) ((bytes - 1) / CHUNK_BYTES) + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_BYTES,
+                    bytes - (long) c * CHUNK_BYTES));
+        }
+        return chunks;
+    }
+
+    private static ByteBuffer[] map (File file, long bytes, long offset)
+            throws IOException
+    {
+        ByteBuffer[] chunks = new ByteBuffer[(int) ((bytes - 1) / CHUNK_BYTES) + 1];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            for (int c = 0; c < chunks.length; c++) {
+                long start = (long) c * CHUNK_BYTES;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        offset + start, Math.min(CHUNK_BYTES, bytes - start));
+            }
+        }
+        return chunks;
+    }
+
+    private static DoubleBuffer[] asDoubles (ByteBuffer[] chunks) {
+        DoubleBuffer[] doubles = new DoubleBuffer[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            doubles[c] = chunks[c].order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer();
+        }
+        return doubles;
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return size of the cost and previous city tables of the last run in
+     * bytes, which is nearly all of the memory it used
+     */
+    public long getTableBytes () {
+        return tableBytes;
+    }
+
+    /**
+     * @return whether the tables of the last run were memory mapped from a
+     * temporary file rather than allocated off-heap
+     */
+    public boolean isMapped () {
+        return mapped;
+    }
+
+    /**
+     * Fills in every subset of one size within a range of subsets, going
+     * from one subset of that size straight to the next.
+     */
+    private class LayerTask extends RecursiveAction {
+
+        //range of subsets, as bitmasks
+        private final long from;
+        private final long to;
+
+        //amount of cities in the subsets to fill in
+        private final int size;
+
+        private LayerTask (long from, long to, int size) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+        }
+
+        @Override
+        protected void compute () {
+            if (to - from > TASK_SUBSETS) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new LayerTask(from, middle, size),
+                        new LayerTask(middle, to, size));
+                return;
+            }
+            for (long subset = first(); subset < to; subset = next(subset))
+                fill((int) subset);
+        }
+
+        /**
+         * @return smallest subset of the size from the start of the range on
+         */
+        private long first () {
+            long subset = from;
+
+            //carrying into the lowest city only drops cities, and skips
+            //subsets which all hold more cities than this one
+            while (Long.bitCount(subset) > size) subset += subset & -subset;
+            while (Long.bitCount(subset) < size) subset |= subset + 1;
+            return subset;
+        }
+
+        /**
+         * @return next larger subset with as many cities, by Gosper's hack
+         */
+        private long next (long subset) {
+            long lowest = subset & -subset;
+            long carried = subset + lowest;
+            return carried | ((carried ^ subset) >>> 2) / lowest;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package Main;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content address of an instance: a SHA-256 hash of its coordinates and the
+ * way its distances follow from them. The canonical hash sorts the cities
+ * first, so the same cities listed in any order share it and so can share
+ * their tours, which are translated through that order. The exact hash keeps
+ * the order, for data indexed by city such as distance matrices.
+ */
+public final class InstanceKey {
+
+    //bytes hashed at once
+    private static final int CHUNK_BYTES = 1 << 13;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    //hash function of every thread, looked up once
+    private static final ThreadLocal<MessageDigest> SHA_256 =
+            ThreadLocal.withInitial(() -> {
+                try {
+                    return MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException x) {
+                    throw new IllegalStateException(x);
+                }
+            });
+
+    //city coordinates and the way distances follow from them
+    private final double[] XS;
+    private final double[] YS;
+    private final String METRIC;
+
+    //city at every position of the canonical order
+    private final int[] ORDER;
+
+    //position of every city in the canonical order
+    private final int[] RANK;
+
+    //hex digest of the cities in canonical order
+    private final String CANONICAL;
+
+    //hex digest of the cities in given order, once needed
+    private String exact;
+
+    private InstanceKey (double[] xs, double[] ys, String metric,
+            int[] order)
+    {
+        XS = xs;
+        YS = ys;
+        METRIC = metric;
+        ORDER = order;
+        RANK = new int[order.length];
+        for (int p = 0; p < order.length; p++) RANK[order[p]] = p;
+        CANONICAL = digest(xs, ys, order, metric);
+    }
+
+    /**
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param metric name of the way distances follow from the coordinates,
+     * see {@link CityFile#getMetric}
+     */
+    public static InstanceKey of (double[] xs, double[] ys, String metric) {
+        int n = xs.length;
+        int[] order = new int[n];
+        int[] merged = new int[n];
+        for (int c = 0; c < n; c++) order[c] = c;
+
+        //bottom-up merge sort by x and then y, on the primitive indexes
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int left = lo;
+                int right = mid;
+                for (int m = lo; m < hi; m++) {
+                    if (right >= hi || left < mid
+                            && !before(xs, ys, order[right], order[left])) {
+                        merged[m] = order[left++];
+                    } else {
+                        merged[m] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        return new InstanceKey(xs, ys, metric, order);
+    }
+
+    /**
+     * @return whether city a comes before city b in the canonical order
+     */
+    private static boolean before (double[] xs, double[] ys, int a, int b) {
+        int byX = Double.compare(xs[a] + 0.0, xs[b] + 0.0);
+        return byX != 0 ? byX < 0 : Double.compare(ys[a] + 0.0, ys[b] + 0.0) < 0;
+    }
+
+    /**
+     * @param order city at every position of the order to hash the cities
+     * in, or null for the given order
+     */
+    private static String digest (double[] xs, double[] ys, int[] order,
+            String metric)
+    {
+        MessageDigest sha = SHA_256.get();
+        sha.update(metric.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_BYTES,
+                Integer.BYTES + 2L * Double.BYTES * xs.length));
+        chunk.putInt(xs.length);
+        for (int p = 0; p < xs.length; p++) {
+            int city = order == null ? p : order[p];
+            if (chunk.remaining() < 2 * Double.BYTES) {
+                sha.update(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+
+            //adding 0.0 turns -0.0 into 0.0, the same point
+            chunk.putDouble(xs[city] + 0.0).putDouble(ys[city] + 0.0);
+        }
+        sha.update(chunk.array(), 0, chunk.position());
+        byte[] hash = sha.digest();
+        char[] hex = new char[2 * hash.length];
+        for (int b = 0; b < hash.length; b++) {
+            hex[2 * b] = HEX[(hash[b] >> 4) & 0xf];
+            hex[2 * b + 1] = HEX[hash[b] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return hash shared by the same cities in any order
+     */
+    public String getCanonical () {
+        return CANONICAL;
+    }
+
+    /**
+     * @return hash of the cities in the order given
+     */
+    public synchronized String getExact () {
+        if (exact == null) exact = digest(XS, YS, null, METRIC);
+        return exact;
+    }
+
+    /**
+     * @return a tour over the cities as given, turned into one over their
+     * canonical order
+     */
+    int[] toCanonical (int[] tour) {
+        int[] canonical = new int[tour.length];
+        for (int c = 0; c < tour.length; c++) canonical[c] = RANK[tour[c]];
+        return canonical;
+    }
+
+    /**
+     * @return a tour over the canonical order of the cities, turned into one
+     * over the cities as given which starts and ends at city 0
+     */
+    int[] fromCanonical (int[] canonical) {
+        int n = canonical.length - 1;
+        int start = 0;
+        while (start < n && ORDER[canonical[start]] != 0) start++;
+        int[] tour = new int[n + 1];
+        for (int c = 0; c < n; c++) {
+            tour[c] = ORDER[canonical[(start + c) % n]];
+        }
+        tour[n] = tour[0];
+        return tour;
+    }
+
+    @Override
+    public boolean equals (Object other) {
+        return other instanceof InstanceKey
+                && getExact().equals(((InstanceKey) other).getExact());
+    }
+
+    @Override
+    public int hashCode () {
+        return getExact().hashCode();
+    }
+
+    @Override
+    public String toString () {
+        return CANONICAL;
+    }
+}
@@ -0,0 +1,239 @@
+package Main;
+
+/**
+ * A 2-d tree over a fixed set of points which can remove points and find the
+ * point nearest to a location among those not yet removed. The tree is
+ * implicit: the points are ordered so that the median of every subtree sits in
+ * the middle of the subtree's range of positions. Every subtree keeps count of
+ * the points left in it so that emptied subtrees are never searched, which
+ * keeps queries around O(log N) even after most points are removed.
+ */
+public class KDTree {
+
+    //point coordinates in tree order
+    private final double[] X;
+    private final double[] Y;
+
+    //index of the point at each tree position
+    private final int[] POINT;
+
+    //tree position of each point
+    private final int[] POSITION;
+
+    //whether the subtree with its median at each tree position is split by
+    //x coordinate rather than y
+    private final boolean[] SPLIT_X;
+
+    //amount of points not removed from the subtree with its median at each
+    //tree position
+    private final int[] alive;
+
+    //whether the point at each tree position has been removed
+    private final boolean[] removed;
+
+    //location being searched for
+    private double queryX;
+    private double queryY;
+
+    //squared distances and tree positions of the closest points found so
+    //far, closest first, and how many of them are wanted
+    private double[] foundDistance = new double[1];
+    private int[] foundPosition = new int[1];
+    private int foundCount;
+    private int wanted;
+
+    /**
+     * Build a tree over the given points in O(N log N).
+     *
+     * @param xs x coordinate of every point
+     * @param ys y coordinate of every point
+     */
+    public KDTree (double[] xs, double[] ys) {
+        int n = xs.length;
+        X = xs.clone();
+        Y = ys.clone();
+        POINT = new int[n];
+        POSITION = new int[n];
+        SPLIT_X = new boolean[n];
+        alive = new int[n];
+        removed = new boolean[n];
+        for (int c = 0; c < n; c++) POINT[c] = c;
+        build(0, n);
+        for (int c = 0; c < n; c++) POSITION[POINT[c]] = c;
+    }
+
+    /**
+     * Find the point nearest to a location among those not yet removed.
+     *
+     * @return index of the nearest point, or -1 if all points were removed
+     */
+    public int nearest (double x, double y) {
+        query(x, y, 1);
+        return foundCount == 0 ? -1 : POINT[foundPosition[0]];
+    }
+
+    /**
+     * Find the points nearest to a location among those not yet removed.
+     *
+     * @param into array to fill with the indexes of the nearest points,
+     * closest first, as many as it has room for
+     *
+     * @return amount of points found, less than the array length only if
+     * fewer points are left
+     */
+    public int nearest (double x, double y, int[] into) {
+        query(x, y, into.length);
+        for (int c = 0; c < foundCount; c++) 
+            into[c] = POINT[foundPosition[c]];
+        return foundCount;
+    }
+
+    private void query (double x, double y, int amount) {
+        queryX = x;
+        queryY = y;
+        wanted = amount;
+        foundCount = 0;
+        if (foundDistance.length < amount) {
+            foundDistance = new double[amount];
+            foundPosition = new int[amount];
+        }
+        search(0, X.length);
+    }
+
+    /**
+     * Remove a point from the tree, it won't be returned by later queries.
+     *
+     * @param point index of the point, must not have been removed already
+     */
+    public void remove (int point) {
+        int position = POSITION[point];
+        removed[position] = true;
+        int lo = 0;
+        int hi = X.length;
+        int mid;
+        while (true) {
+            mid = (lo + hi) >>> 1;
+            alive[mid]--;
+            if (mid == position) return;
+            if (position < mid) hi = mid;
+            else lo = mid + 1;
+        }
+    }
+
+    /**
+     * @return amount of points not yet removed
+     */
+    public int size () {
+        return X.length == 0 ? 0 : alive[X.length >>> 1];
+    }
+
+    /**
+     * Order the points in the range [lo, hi) into a subtree, split along the
+     * axis the points are more spread out on.
+     */
+    private void build (int lo, int hi) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        alive[mid] = hi - lo;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int c = lo; c < hi; c++) {
+            minX = Math.min(minX, X[c]);
+            maxX = Math.max(maxX, X[c]);
+            minY = Math.min(minY, Y[c]);
+            maxY = Math.max(maxY, Y[c]);
+        }
+        boolean splitX = maxX - minX >= maxY - minY;
+        SPLIT_X[mid] = splitX;
+        select(lo, hi - 1, mid, splitX);
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Rearrange the points in [lo, hi] so that the point at position k is
+     * the one which would be there if the range was sorted along the axis,
+     * with no point before it larger and none after it smaller.
+     */
+    private void select (int lo, int hi, int k, boolean splitX) {
+        double[] axis = splitX ? X : Y;
+        while (hi > lo) {
+            double pivot = medianOfThree(axis[lo], axis[(lo + hi) >>> 1],
+                    axis[hi]);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (axis[i] < pivot) i++;
+                while (axis[j] > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private static double medianOfThree (double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private void swap (int i, int j) {
+        double d = X[i];
+        X[i] = X[j];
+        X[j] = d;
+        d = Y[i];
+        Y[i] = Y[j];
+        Y[j] = d;
+        int p = POINT[i];
+        POINT[i] = POINT[j];
+        POINT[j] = p;
+    }
+
+    /**
+     * Search the subtree over positions [lo, hi) for a point closer than the
+     * best found so far, visiting the side of the split the query falls on
+     * first and the other side only if it can hold a closer point.
+     */
+    private void search (int lo, int hi) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (alive[mid] == 0) return;
+        double dx = queryX - X[mid];
+        double dy = queryY - Y[mid];
+        if (!removed[mid]) found(mid, dx * dx + dy * dy);
+        double split = SPLIT_X[mid] ? dx : dy;
+        if (split < 0) {
+            search(lo, mid);
+            if (split * split < worstFound()) search(mid + 1, hi);
+        } else {
+            search(mid + 1, hi);
+            if (split * split < worstFound()) search(lo, mid);
+        }
+    }
+
+    /**
+     * @return squared distance a point has to beat to be one of the closest
+     * points found so far
+     */
+    private double worstFound () {
+        return foundCount < wanted ? Double.POSITIVE_INFINITY
+                : foundDistance[wanted - 1];
+    }
+
+    /**
+     * Insert a point into the closest points found so far if it is closer
+     * than one of them.
+     */
+    private void found (int position, double distance) {
+        if (distance >= worstFound()) return;
+        int c = foundCount < wanted ? foundCount++ : wanted - 1;
+        for (; c > 0 && foundDistance[c - 1] > distance; c--) {
+            foundDistance[c] = foundDistance[c - 1];
+            foundPosition[c] = foundPosition[c - 1];
+        }
+        foundDistance[c] = distance;
+        foundPosition[c] = position;
+    }
+}
@@ -0,0 +1,607 @@
+package Main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A Lin-Kernighan style heuristic for large instances. Starting from a
+ * nearest neighbor tour, every city t1 with one of its tour edges (t1, t2)
+ * begins a chain of 2-opt moves: each move adds an edge (t2, t3) to one of
+ * the candidate neighbors of t2 and removes the edge (t3, t4) which lets the
+ * tour close up with (t4, t1), and the next move breaks that closing edge
+ * again. The chain goes on as long as the edges removed so far outweigh the
+ * ones added, up to a depth of {@link #MAX_DEPTH}, and the tour is rolled
+ * back to the best point along it. The candidates of a city are its nearest
+ * neighbors in each of the four quadrants around it, filled up with its
+ * nearest neighbors overall, which keeps clustered cities connected to the
+ * rest. The tour is a {@link TwoLevelTour} so each move costs O(sqrt N).
+ *
+ * Once no chain improves the tour, the remaining time goes to random local
+ * double bridge kicks, each followed by the chains around it and undone
+ * again unless the tour ended up shorter.
+ */
+public class LinKernighanTSP {
+
+    //amount of candidate neighbors per city by default
+    public static final int DEFAULT_CANDIDATES = 8;
+
+    //most 2-opt moves in a single chain
+    private static final int MAX_DEPTH = 50;
+
+    //longest segment swapped by a kick
+    private static final int KICK_SEGMENT = 50;
+
+    //smallest gain a chain needs, anything less is rounding error
+    private static final double EPSILON = 1e-9;
+
+    //city coordinates
+    private final double[] X;
+    private final double[] Y;
+
+    //amount of cities
+    private final int N;
+
+    //amount of candidates per city
+    private final int K;
+
+    //the candidates of every city, closest first, city c's at
+    //CANDIDATES[c * K] to CANDIDATES[c * K + K - 1]
+    private final int[] CANDIDATES;
+
+    //seconds to spend on kicks after the first local optimum
+    private double timeLimit;
+
+    //seed of the kicks
+    private long seed = 1;
+
+    //tour to start from instead of a nearest neighbor tour, or null
+    private int[] startTour;
+
+    //cities to start the first chains from, or null for all of them
+    private int[] focus;
+
+    //tour being improved and its cost
+    private TwoLevelTour tour;
+    private double tourCost;
+
+    //every move applied since the last commit, four cities per move, so it
+    //can be undone
+    private int[] journal = new int[256];
+    private int journalSize;
+
+    //whether committed moves stay in the journal so a whole kick can be
+    //undone
+    private boolean keepJournal;
+
+    //edges added by the current chain, as pairs of cities
+    private final int[] added = new int[2 * MAX_DEPTH];
+
+    //queue of cities whose don't-look bit is clear
+    private int[] queue;
+    private int head;
+    private int queued;
+    private boolean[] inQueue;
+
+    //the complete tour holding the best cost
+    private int[] bestPath;
+
+    //saved cost of best tour found
+    private double bestWeight;
+
+    //cost of the tour before the kicks, and kicks tried and kept
+    private double localOptimum;
+    private int kicks;
+    private int keptKicks;
+
+    /**
+     * Prepare to solve the TSP over the given cities using
+     * {@link #DEFAULT_CANDIDATES} candidates per city.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public LinKernighanTSP (double[] xs, double[] ys) {
+        this(xs, ys, DEFAULT_CANDIDATES);
+    }
+
+    /**
+     * Prepare to solve the TSP over the given cities, finding the candidates
+     * of every city with a k-d tree in O(N log N).
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param candidates amount of candidate neighbors per city
+     */
+    public LinKernighanTSP (double[] xs, double[] ys, int candidates) {
+        this(xs, ys, candidates, null);
+    }
+
+    /**
+     * Prepare to solve the TSP over the given cities, reusing the candidates
+     * an earlier solver found for them.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param candidates amount of candidate neighbors per city
+     * @param found what {@link #getCandidates} returned for a solver over
+     * the same cities with the same amount of candidates, or null to find
+     * them
+     */
+    public LinKernighanTSP (double[] xs, double[] ys, int candidates,
+            int[] found)
+    {
+        this(xs, ys, candidates, found, null);
+    }
+
+    /**
+     * Prepare to solve the TSP over the given cities, reusing candidates
+     * found for them elsewhere except for some cities whose candidates may
+     * be wrong, such as candidates found within parts of the cities for the
+     * cities near the borders of those parts.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param candidates amount of candidate neighbors per city
+     * @param found the candidates of every city, laid out as
+     * {@link #getCandidates} returns them, or null to find them
+     * @param stale whether the candidates of every city are to be found
+     * again, into found, or null if all of them can be kept
+     */
+    public LinKernighanTSP (double[] xs, double[] ys, int candidates,
+            int[] found, boolean[] stale)
+    {
+        X = xs;
+        Y = ys;
+        N = xs.length;
+        K = Math.max(0, Math.min(candidates, N - 1));
+        if (found != null && stale == null) {
+            CANDIDATES = found;
+            return;
+        }
+        CANDIDATES = found != null ? found : new int[N * K];
+        KDTree tree = new KDTree(xs, ys);
+        int[] nearest = new int[Math.min(N, 5 * K + 1)];
+        int[] chosen = new int[K];
+        double[] distances = new double[K];
+        for (int c = 0; c < N; c++) {
+            if (stale != null && !stale[c]) continue;
+            int amount = tree.nearest(xs[c], ys[c], nearest);
+            int count = pickCandidates(c, nearest, amount, chosen);
+            for (int k = 0; k < count; k++) distances[k] = distance(c, chosen[k]);
+
+            //sort by distance so a chain can stop at the first candidate
+            //which is too far
+            for (int i = 1; i < count; i++) {
+                int city = chosen[i];
+                double d = distances[i];
+                int j = i;
+                for (; j > 0 && distances[j - 1] > d; j--) {
+                    chosen[j] = chosen[j - 1];
+                    distances[j] = distances[j - 1];
+                }
+                chosen[j] = city;
+                distances[j] = d;
+            }
+            System.arraycopy(chosen, 0, CANDIDATES, c * K, K);
+        }
+    }
+
+    /**
+     * Choose the candidates of a city among its nearest neighbors: the
+     * nearest ones in each quadrant first, then the nearest ones left.
+     *
+     * @return amount of candidates chosen, K unless there are fewer cities
+     */
+    private int pickCandidates (int city, int[] found, int amount, int[] into) {
+        int perQuadrant = Math.max(1, K / 4);
+        int[] inQuadrant = new int[4];
+        boolean[] taken = new boolean[amount];
+        int count = 0;
+        for (int f = 0; f < amount && count < K; f++) {
+            int other = found[f];
+            if (other == city) {
+                taken[f] = true;
+                continue;
+            }
+            int quadrant = (X[other] >= X[city] ? 0 : 1)
+                    + (Y[other] >= Y[city] ? 0 : 2);
+            if (inQuadrant[quadrant] < perQuadrant) {
+                inQuadrant[quadrant]++;
+                taken[f] = true;
+                into[count++] = other;
+            }
+        }
+        for (int f = 0; f < amount && count < K; f++) {
+            if (!taken[f]) into[count++] = found[f];
+        }
+        return count;
+    }
+
+    /**
+     * @return the candidates of every city, closest first, city c's at c * K
+     * to c * K + K - 1 for K candidates per city, not to be changed
+     */
+    public int[] getCandidates () {
+        return CANDIDATES;
+    }
+
+    /**
+     * Set how long to keep kicking the tour out of its local optimum.
+     *
+     * @param seconds time to spend on kicks, 0 by default which stops at the
+     * first local optimum
+     */
+    public void setTimeLimit (double seconds) {
+        timeLimit = seconds;
+    }
+
+    /**
+     * Set the seed the kicks are chosen with, so runs can be repeated.
+     */
+    public void setSeed (long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set a tour to improve instead of building a nearest neighbor tour.
+     *
+     * @param path a tour over all cities, beginning and ending at the same
+     * city like the solvers return, or null for a nearest neighbor tour, the
+     * default
+     */
+    public void setStartTour (int[] path) {
+        startTour = path;
+    }
+
+    /**
+     * Start the first chains only from the given cities rather than from
+     * every city. Cities whose edges those chains change start chains of
+     * their own in turn, so the search spreads only as far as it pays off,
+     * which is what improving the seams of a tour built in parts needs.
+     *
+     * @param cities cities to start from, or null for all cities, the
+     * default
+     */
+    public void setFocus (int[] cities) {
+        focus = cities;
+    }
+
+    /**
+     * Build a nearest neighbor tour, or take the start tour, improve it with
+     * chains from every city, or every city of the focus, until none
+     * improves it, then kick it until the time limit is up.
+     */
+    public void go () {
+        if (N < 5) {
+            solveSmall();
+            localOptimum = bestWeight;
+            return;
+        }
+        long deadline = System.nanoTime() + (long) (timeLimit * 1e9);
+        int[] order = startTour != null ? Arrays.copyOf(startTour, N)
+                : nearestNeighborTour();
+        tour = new TwoLevelTour(order);
+        tourCost = 0;
+        for (int c = 0; c < N; c++) tourCost += distance(order[c], order[(c + 1) % N]);
+        queue = new int[N];
+        inQueue = new boolean[N];
+        head = queued = 0;
+        journalSize = 0;
+        keepJournal = false;
+        if (focus != null) {
+            for (int city : focus) push(city);
+        } else {
+            for (int c = 0; c < N; c++) push(order[c]);
+        }
+        optimize();
+        localOptimum = tourCost;
+
+        kicks = keptKicks = 0;
+        Random random = new Random(seed);
+        keepJournal = true;
+        while (System.nanoTime() < deadline) {
+            double before = tourCost;
+            journalSize = 0;
+            kick(random);
+            optimize();
+            kicks++;
+            if (tourCost < before - EPSILON) {
+                keptKicks++;
+            } else {
+                undo(0);
+                tourCost = before;
+            }
+        }
+        keepJournal = false;
+        journalSize = 0;
+
+        bestPath = new int[N + 1];
+        tour.toArray(0, order);
+        System.arraycopy(order, 0, bestPath, 0, N);
+        bestWeight = cost(bestPath);
+        tour = null;
+        queue = null;
+        inQueue = null;
+    }
+
+    /**
+     * Too few cities for chains of moves. Every tour over three cities or
+     * less costs the same both ways round, and four cities only make three
+     * tours, the start tour and the two with either its middle or its last
+     * two cities swapped, so compare those and keep the cheapest.
+     */
+    private void solveSmall () {
+        int[] order = new int[N];
+        for (int c = 0; c < N; c++) order[c] = startTour != null ? startTour[c] : c;
+        bestPath = closed(order);
+        bestWeight = cost(bestPath);
+        if (N < 4) return;
+        for (int swap = 1; swap <= 2; swap++) {
+            int[] other = closed(order);
+            other[swap] = order[swap + 1];
+            other[swap + 1] = order[swap];
+            double weight = cost(other);
+            if (weight < bestWeight - EPSILON) {
+                bestPath = other;
+                bestWeight = weight;
+            }
+        }
+    }
+
+    /**
+     * @return the order with its first city appended to close the tour
+     */
+    private static int[] closed (int[] order) {
+        int[] path = Arrays.copyOf(order, order.length + 1);
+        if (order.length > 0) path[order.length] = order[0];
+        return path;
+    }
+
+    /**
+     * Start chains from the cities in the queue until it is empty.
+     */
+    private void optimize () {
+        int city;
+        while (queued > 0) {
+            city = queue[head];
+            head = (head + 1) % N;
+            queued--;
+            inQueue[city] = false;
+            while (improve(city)) {
+                push(city);
+            }
+        }
+    }
+
+    /**
+     * Try chains starting with either tour edge of a city.
+     *
+     * @return true if the tour was improved
+     */
+    private boolean improve (int t1) {
+        return chain(t1, tour.next(t1)) || chain(t1, tour.previous(t1));
+    }
+
+    /**
+     * Try every candidate t3 of t2 as the first move of a chain breaking edge
+     * (t1, t2), deepening each chain greedily.
+     *
+     * @return true if the tour was improved
+     */
+    private boolean chain (int t1, int t2) {
+        int start = journalSize;
+        double removed = distance(t1, t2);
+        for (int n = t2 * K; n < t2 * K + K; n++) {
+            int t3 = CANDIDATES[n];
+            double gain = removed - distance(t2, t3);
+            if (gain <= EPSILON) break;
+            boolean forward = tour.next(t1) == t2;
+            int t4 = forward ? tour.previous(t3) : tour.next(t3);
+            if (t3 == t1 || t4 == t2) continue;
+            gain += distance(t3, t4);
+            tour.move(t1, t2, t4, t3);
+            record(t1, t2, t4, t3);
+            added[0] = t2;
+            added[1] = t3;
+
+            //best closed gain along the chain, and the journal size at it
+            double best = gain - distance(t4, t1);
+            int bestSize = journalSize;
+            int depth = 1;
+            int last = t4;
+            while (depth < MAX_DEPTH) {
+                int next = deepen(t1, last, gain, depth);
+                if (next < 0) break;
+                int u3 = journal[journalSize - 1];
+                gain += distance(u3, next) - distance(last, u3);
+                last = next;
+                depth++;
+                double closed = gain - distance(last, t1);
+                if (closed > best) {
+                    best = closed;
+                    bestSize = journalSize;
+                }
+            }
+            if (best > EPSILON) {
+                undo(bestSize);
+                commit(start, best);
+                return true;
+            }
+            undo(start);
+        }
+        return false;
+    }
+
+    /**
+     * Apply the most promising next move of a chain which currently closes
+     * with edge (t1, t2): add an edge (t2, t3) to a candidate while the chain
+     * stays ahead, and remove the edge (t3, t4) which is longest, as long as
+     * the chain did not add it.
+     *
+     * @return t4 of the move applied, or -1 if no move is left
+     */
+    private int deepen (int t1, int t2, double gain, int depth) {
+        boolean forward = tour.next(t1) == t2;
+        int bestT3 = -1;
+        int bestT4 = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int n = t2 * K; n < t2 * K + K; n++) {
+            int t3 = CANDIDATES[n];
+            double g = gain - distance(t2, t3);
+            if (g <= EPSILON) break;
+            int t4 = forward ? tour.previous(t3) : tour.next(t3);
+            if (t3 == t1 || t4 == t2 || wasAdded(t3, t4, depth)) continue;
+            double value = g + distance(t3, t4);
+            if (value > bestValue) {
+                bestValue = value;
+                bestT3 = t3;
+                bestT4 = t4;
+            }
+        }
+        if (bestT3 < 0) return -1;
+        tour.move(t1, t2, bestT4, bestT3);
+        record(t1, t2, bestT4, bestT3);
+        added[2 * depth] = t2;
+        added[2 * depth + 1] = bestT3;
+        return bestT4;
+    }
+
+    private boolean wasAdded (int a, int b, int depth) {
+        for (int d = 0; d < depth; d++) {
+            int x = added[2 * d];
+            int y = added[2 * d + 1];
+            if (x == a && y == b || x == b && y == a) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Swap two short neighboring segments of the tour starting at a random
+     * city, a double bridge move no chain of 2-opt moves can undo directly.
+     */
+    private void kick (Random random) {
+        int segment = Math.min(KICK_SEGMENT, N / 4);
+        int a = random.nextInt(N);
+        int b1 = tour.next(a);
+        int b2 = b1;
+        for (int c = random.nextInt(segment); c > 0; c--) b2 = tour.next(b2);
+        int c1 = tour.next(b2);
+        int c2 = c1;
+        for (int c = random.nextInt(segment); c > 0; c--) c2 = tour.next(c2);
+        int d = tour.next(c2);
+        tourCost += distance(a, c1) + distance(c2, b1) + distance(b2, d)
+                - distance(a, b1) - distance(b2, c1) - distance(c2, d);
+
+        //reversing both segments together and then each on its own swaps
+        //them
+        tour.move(a, b1, c2, d);
+        record(a, b1, c2, d);
+        tour.move(a, c2, c1, b2);
+        record(a, c2, c1, b2);
+        tour.move(c2, b2, b1, d);
+        record(c2, b2, b1, d);
+        for (int city : new int[] {a, b1, b2, c1, c2, d}) push(city);
+    }
+
+    /**
+     * Keep the moves of the chain which begin at a journal position, and
+     * clear the don't-look bits of every city they touched.
+     */
+    private void commit (int start, double gain) {
+        tourCost -= gain;
+        for (int j = start; j < journalSize; j++) push(journal[j]);
+        if (!keepJournal) journalSize = start;
+    }
+
+    /**
+     * Undo the moves in the journal back to a journal size.
+     */
+    private void undo (int size) {
+        while (journalSize > size) {
+            journalSize -= 4;
+            int a = journal[journalSize];
+            int b = journal[journalSize + 1];
+            int c = journal[journalSize + 2];
+            int d = journal[journalSize + 3];
+
+            //the move left edges (a, c) and (b, d) in the same orientation
+            tour.move(a, c, b, d);
+        }
+    }
+
+    private void record (int a, int b, int c, int d) {
+        if (journalSize + 4 > journal.length) {
+            journal = Arrays.copyOf(journal, 2 * journal.length);
+        }
+        journal[journalSize++] = a;
+        journal[journalSize++] = b;
+        journal[journalSize++] = c;
+        journal[journalSize++] = d;
+    }
+
+    /**
+     * @return a tour starting at city 0 which always travels to the nearest
+     * city not visited yet
+     */
+    private int[] nearestNeighborTour () {
+        KDTree remaining = new KDTree(X, Y);
+        int[] order = new int[N];
+        int current = 0;
+        remaining.remove(current);
+        for (int c = 1; c < N; c++) {
+            current = remaining.nearest(X[current], Y[current]);
+            remaining.remove(current);
+            order[c] = current;
+        }
+        return order;
+    }
+
+    private void push (int city) {
+        if (inQueue[city]) return;
+        inQueue[city] = true;
+        queue[(head + queued++) % N] = city;
+    }
+
+    private double distance (int a, int b) {
+        double dx = X[a] - X[b];
+        double dy = Y[a] - Y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double cost (int[] path) {
+        double sum = 0;
+        for (int c = 1; c < path.length; c++)
+            sum += distance(path[c - 1], path[c]);
+        return sum;
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return cost of the tour of the last run at its first local optimum,
+     * before any kicks
+     */
+    public double getLocalOptimum () {
+        return localOptimum;
+    }
+
+    /**
+     * @return amount of kicks tried in the last run
+     */
+    public int getKicks () {
+        return kicks;
+    }
+
+    /**
+     * @return amount of kicks of the last run which shortened the tour
+     */
+    public int getKeptKicks () {
+        return keptKicks;
+    }
+}
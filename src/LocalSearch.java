@@ -0,0 +1,402 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Improves tours with 2-opt and Or-opt moves. Only moves which add an edge
+ * between a city and one of its k nearest neighbors are tried, and every city
+ * has a don't-look bit which is set once no improving move starts at it and
+ * cleared again when one of its tour edges changes, so each pass only looks
+ * at the parts of the tour which just changed. The tour is kept as an array
+ * of cities with the position of every city, and a 2-opt move reverses
+ * whichever side of the tour is shorter.
+ */
+public class LocalSearch {
+
+    //amount of nearest neighbors tried for each city by default
+    public static final int DEFAULT_NEIGHBORS = 8;
+
+    //longest segment Or-opt moves
+    private static final int MAX_SEGMENT = 3;
+
+    //smallest gain a move needs, anything less is rounding error
+    private static final double EPSILON = 1e-9;
+
+    //city coordinates
+    private final double[] X;
+    private final double[] Y;
+
+    //amount of cities
+    private final int N;
+
+    //amount of neighbors per city
+    private final int K;
+
+    //the K nearest neighbors of every city, closest first, city c's at
+    //NEIGHBORS[c * K] to NEIGHBORS[c * K + K - 1]
+    private final int[] NEIGHBORS;
+
+    //city at every position of the tour being improved, and the position of
+    //every city on it
+    private int[] tour;
+    private int[] position;
+
+    //queue of cities whose don't-look bit is clear
+    private int[] queue;
+    private int head;
+    private int queued;
+    private boolean[] inQueue;
+
+    //result of every stage of the last run
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * Prepare to improve tours over the given cities using
+     * {@link #DEFAULT_NEIGHBORS} neighbors per city.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public LocalSearch (double[] xs, double[] ys) {
+        this(xs, ys, DEFAULT_NEIGHBORS);
+    }
+
+    /**
+     * Prepare to improve tours over the given cities, finding the neighbors
+     * of every city with a k-d tree in O(N log N).
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param neighbors amount of nearest neighbors tried for each city
+     */
+    public LocalSearch (double[] xs, double[] ys, int neighbors) {
+        this(xs, ys, neighbors, null);
+    }
+
+    /**
+     * Prepare to improve tours over the given cities, reusing the neighbors
+     * an earlier search found for them.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param neighbors amount of nearest neighbors tried for each city
+     * @param found what {@link #getNeighbors} returned for a search over the
+     * same cities with the same amount of neighbors, or null to find them
+     */
+    public LocalSearch (double[] xs, double[] ys, int neighbors, int[] found) {
+        X = xs;
+        Y = ys;
+        N = xs.length;
+        K = Math.max(0, Math.min(neighbors, N - 1));
+        if (found != null) {
+            NEIGHBORS = found;
+            return;
+        }
+        NEIGHBORS = new int[N * K];
+        KDTree tree = new KDTree(xs, ys);
+        int[] nearest = new int[K + 1];
+        int k;
+        for (int c = 0; c < N; c++) {
+            tree.nearest(xs[c], ys[c], nearest);
+            k = 0;
+            for (int f = 0; f < nearest.length && k < K; f++) {
+                if (nearest[f] != c) NEIGHBORS[c * K + k++] = nearest[f];
+            }
+        }
+    }
+
+    /**
+     * Improve a tour with 2-opt moves until none is left, then with Or-opt
+     * and 2-opt moves together until neither is left.
+     *
+     * @param path a tour beginning and ending at city 0, like the solvers
+     * return
+     *
+     * @return the improved tour, beginning and ending at city 0
+     */
+    public int[] improve (int[] path) {
+        stages.clear();
+        if (N < 5) {
+            stages.add(new Stage("2-opt", cost(path), cost(path), 0));
+            return path.clone();
+        }
+        tour = new int[N];
+        position = new int[N];
+        System.arraycopy(path, 0, tour, 0, N);
+        for (int c = 0; c < N; c++) position[tour[c]] = c;
+        queue = new int[N];
+        inQueue = new boolean[N];
+
+        run("2-opt", false);
+        run("Or-opt", true);
+
+        int[] result = new int[N + 1];
+        int start = position[0];
+        for (int c = 0; c < N; c++) result[c] = tour[(start + c) % N];
+        tour = position = queue = null;
+        inQueue = null;
+        return result;
+    }
+
+    /**
+     * @return the nearest neighbors of every city, closest first, city c's at
+     * c * K to c * K + K - 1 for K neighbors per city, not to be changed
+     */
+    public int[] getNeighbors () {
+        return NEIGHBORS;
+    }
+
+    /**
+     * @return what every stage of the last run achieved, in order
+     */
+    public List<Stage> getStages () {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Apply improving moves starting from every city, until no city is left
+     * in the queue.
+     */
+    private void run (String name, boolean orOpt) {
+        long start = System.nanoTime();
+        double before = tourCost();
+        for (int c = 0; c < N; c++) push(tour[c]);
+        int city;
+        while (queued > 0) {
+            city = queue[head];
+            head = (head + 1) % N;
+            queued--;
+            inQueue[city] = false;
+            while (twoOpt(city) || orOpt && orOpt(city)) {
+                push(city);
+            }
+        }
+        stages.add(new Stage(name, before, tourCost(),
+                (System.nanoTime() - start) / 1e9));
+    }
+
+    /**
+     * Try replacing an edge of a city and an edge of one of its neighbors
+     * with the edge between them and the edge between their other ends.
+     *
+     * @return true if the tour was improved
+     */
+    private boolean twoOpt (int a) {
+        int b;
+        int c;
+        int d;
+        double removed;
+        double gain;
+        for (int direction = 0; direction < 2; direction++) {
+            b = direction == 0 ? next(a) : previous(a);
+            removed = distance(a, b);
+            for (int n = a * K; n < a * K + K; n++) {
+                c = NEIGHBORS[n];
+
+                //neighbors are sorted, no further one can be closer than b
+                gain = removed - distance(a, c);
+                if (gain <= EPSILON) break;
+                d = direction == 0 ? next(c) : previous(c);
+                if (c == b || d == a) continue;
+                gain += distance(c, d) - distance(b, d);
+                if (gain > EPSILON) {
+                    exchange(a, b, c, d);
+                    push(b);
+                    push(c);
+                    push(d);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Try moving a segment of up to {@link #MAX_SEGMENT} cities starting at a
+     * city to between a neighbor of one of its ends and the next or previous
+     * city of that neighbor, in either orientation.
+     *
+     * @return true if the tour was improved
+     */
+    private boolean orOpt (int first) {
+        int last = first;
+        for (int length = 1; length <= MAX_SEGMENT; length++) {
+            if (length > 1) last = next(last);
+            int before = previous(first);
+            int after = next(last);
+            if (after == before) return false;
+
+            //gained by closing the gap the segment leaves
+            double removed = distance(before, first) + distance(last, after)
+                    - distance(before, after);
+            if (removed <= EPSILON) continue;
+            for (int end = 0; end < 2; end++) {
+                int city = end == 0 ? first : last;
+                for (int n = city * K; n < city * K + K; n++) {
+                    int c = NEIGHBORS[n];
+                    if (distance(city, c) >= removed) break;
+                    if (inSegment(c, first, length)) continue;
+                    if (tryInsert(first, last, length, before, after, c,
+                            next(c), removed)
+                            || tryInsert(first, last, length, before, after,
+                                    previous(c), c, removed))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the segment from first to last between cities x and y, x being
+     * followed by y, if that improves the tour.
+     *
+     * @return true if the segment was moved
+     */
+    private boolean tryInsert (int first, int last, int length, int before,
+            int after, int x, int y, double removed)
+    {
+        if (inSegment(x, first, length) || inSegment(y, first, length)
+                || x == after || y == before) {
+            return false;
+        }
+        double edge = distance(x, y);
+        double reversed = distance(x, last) + distance(first, y) - edge;
+        double forward = distance(x, first) + distance(last, y) - edge;
+        if (removed - Math.min(reversed, forward) <= EPSILON) return false;
+
+        //two exchanges move the segment in reversed, and a third turns it
+        //back around
+        exchange(before, first, x, y);
+        exchange(before, x, after, last);
+        if (forward < reversed) exchange(x, last, first, y);
+        push(before);
+        push(after);
+        push(x);
+        push(y);
+        push(last);
+        return true;
+    }
+
+    private boolean inSegment (int city, int first, int length) {
+        int offset = position[city] - position[first];
+        if (offset < 0) offset += N;
+        return offset < length;
+    }
+
+    /**
+     * Replace edges (a, b) and (c, d) with edges (a, c) and (b, d), where b
+     * and d either both follow or both precede a and c on the tour.
+     */
+    private void exchange (int a, int b, int c, int d) {
+        if (b == next(a)) reverse(position[b], position[c]);
+        else reverse(position[a], position[d]);
+    }
+
+    /**
+     * Reverse the part of the tour from position i forward to position j,
+     * or the rest of the tour instead if that is shorter, which has the same
+     * effect on the cycle.
+     */
+    private void reverse (int i, int j) {
+        int length = j - i;
+        if (length < 0) length += N;
+        length++;
+        if (2 * length > N) {
+            int k = i;
+            i = (j + 1) % N;
+            j = (k - 1 + N) % N;
+            length = N - length;
+        }
+        int city;
+        for (int swaps = length / 2; swaps > 0; swaps--) {
+            city = tour[i];
+            tour[i] = tour[j];
+            tour[j] = city;
+            position[tour[i]] = i;
+            position[tour[j]] = j;
+            if (++i == N) i = 0;
+            if (--j < 0) j = N - 1;
+        }
+    }
+
+    private int next (int city) {
+        int p = position[city] + 1;
+        return tour[p == N ? 0 : p];
+    }
+
+    private int previous (int city) {
+        int p = position[city];
+        return tour[p == 0 ? N - 1 : p - 1];
+    }
+
+    private void push (int city) {
+        if (inQueue[city]) return;
+        inQueue[city] = true;
+        queue[(head + queued++) % N] = city;
+    }
+
+    private double distance (int a, int b) {
+        double dx = X[a] - X[b];
+        double dy = Y[a] - Y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double tourCost () {
+        double sum = distance(tour[N - 1], tour[0]);
+        for (int c = 1; c < N; c++) sum += distance(tour[c - 1], tour[c]);
+        return sum;
+    }
+
+    private double cost (int[] path) {
+        double sum = 0;
+        for (int c = 1; c < path.length; c++)
+            sum += distance(path[c - 1], path[c]);
+        return sum;
+    }
+
+    /**
+     * What a single stage of improvement achieved.
+     */
+    public static class Stage {
+
+        private final String name;
+        private final double before;
+        private final double after;
+        private final double seconds;
+
+        private Stage (String name, double before, double after,
+                double seconds)
+        {
+            this.name = name;
+            this.before = before;
+            this.after = after;
+            this.seconds = seconds;
+        }
+
+        public String getName () {
+            return name;
+        }
+
+        public double getBefore () {
+            return before;
+        }
+
+        public double getAfter () {
+            return after;
+        }
+
+        public double getSeconds () {
+            return seconds;
+        }
+
+        @Override
+        public String toString () {
+            return String.format("%s: %.2f -> %.2f (%.2f%% better) in %.3f "
+                    + "seconds", name, before, after,
+                    100 * (before - after) / before, seconds);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package Main;
+
+import java.io.Serializable;
+
+/**
+ * A way of computing lower bounds on the cost of completing partial tours,
+ * used by {@link BranchNBoundTSP} to prune its search tree. Partial tours
+ * always begin at city 0 and sets of cities are given as bitmasks with bit c
+ * set for city c. Bounds are serializable so that
+ * {@link DistributedBranchNBoundTSP} can send their settings to its workers,
+ * it only ever sends copies which haven't been started.
+ */
+public interface LowerBound extends Serializable {
+    
+    /**
+     * Get ready to bound tours on the given graph, called once at the start of
+     * every search.
+     *
+     * @param distances cost of travelling between any two cities
+     */
+    void start (DistanceProvider distances);
+    
+    /**
+     * Get ready to bound the children of a node, called before the children
+     * are passed to {@link #bound}.
+     *
+     * @param last last city on the node's partial tour
+     * @param open bitmask of the cities not on the node's partial tour
+     */
+    default void prepare (int last, long open) {
+    }
+    
+    /**
+     * Compute the lower bound of a child of the node last passed to 
+     * {@link #prepare}.
+     *
+     * @param last last city on the partial tour
+     * @param partial cost of the partial tour
+     * @param open bitmask of the cities not on the partial tour, never empty
+     * @param cutoff cost of the best full tour found so far, the computation
+     * may stop early and return any value of at least this much once the
+     * bound is known to reach it
+     *
+     * @return a value no larger than the cost of any full tour beginning with
+     * the partial tour
+     */
+    double bound (int last, double partial, long open, double cutoff);
+    
+    /**
+     * Create a bound of the same kind and settings which has not been started
+     * yet, for use by another thread.
+     *
+     * @return the new bound
+     */
+    LowerBound copy ();
+}
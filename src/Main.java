@@ -1,35 +1,55 @@
 package Main;
 
-import java.awt.geom.Point2D;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     
     //how many cities the graph should contain
     private static int CITY_AMOUNT;
     
-    //read weights from the adjacency matrix instead of the vertices array
-    private static boolean useMatrix;
-            
-    //adjacency matrix
-    private static double[][] adjMatrix;
+    //file cities are read from, a file of coordinates as text, in the
+    //binary format of CityFile or in the TSPLIB format
+    private static String cityFile = "cities";
     
-    //vertices array
-    private static Point2D.Double[] vertices;
+    //distances between the vertices
+    private static DistanceProvider distances;
+    
+    //distances between the vertices as the city file defines them
+    private static DistanceProvider fileDistances;
+    
+    //name of the way the city file defines distances, see CityFile#getMetric
+    private static String metric = "EUCLIDEAN";
+    
+    //distances of cities solved before, so going again with the same cities
+    //doesn't build them again
+    private static final SolutionCache CACHE =
+            new SolutionCache(SolutionCache.DEFAULT_BYTES);
+    
+    //vertex coordinates
+    private static double[] xs;
+    private static double[] ys;
     
     //saved cost of best path found
     private static double bestResult;
     
+    //seconds between progress reports of long branch-and-bound searches
+    private static final int PROGRESS_SECONDS = 5;
+    
     public static void main (String[] args) {
+        if (args.length > 0) cityFile = args[0];
         runProcedure();
     }
     
@@ -43,24 +63,49 @@ public class Main {
                 + "optimal\n\tpath)\n1 - branch-and-bound (efficient but still"
                 + " has limitations, finds\n\toptimal path)\n2 - nearest "
                 + "neighbor (starting at any city always travel to closest "
-                + "one, fastest but not\n\tlikely to give optimal solution)");
-        int method = 3;
-        while (method < 0 || method > 2) method = getInteger("Type 0 1 or 2:");
+                + "one, fastest but not\n\tlikely to give optimal solution)\n"
+                + "3 - parallel brute force (brute force split across all "
+                + "processors, skips\n\tpaths which are already too long)\n"
+                + "4 - Held-Karp (dynamic programming over all subsets of "
+                + "cities, finds optimal\n\tpath but needs memory exponential "
+                + "in the city amount)\n5 - Lin-Kernighan (chains of "
+                + "exchanges which keep going while they pay off,\n\tclose to "
+                + "optimal for large amounts of cities but not guaranteed "
+                + "optimal)\n6 - spatial decomposition (split the cities into "
+                + "parts solved in parallel and\n\tstitched together, for "
+                + "millions of cities)\n7 - parallel tempering (annealing "
+                + "chains at different temperatures on every\n\tprocessor "
+                + "trading tours, for thousands to tens of thousands of "
+                + "cities)");
+        int method = -1;
+        while (method < 0 || method > 7) 
+            method = getInteger("Type 0 1 2 3 4 5 6 or 7:");
         System.out.println("How many cities to use?\nBrute force method "
-                + "can handle only up to 11 before Java runs out of memory.\n"
+                + "can handle only up to 13 within reasonable time, parallel "
+                + "brute force a\nfew more depending on processor count.\n"
                 + "Branch-and-bound can find a solution within reasonable time"
-                + " only up to 18 cities.\nNearest neighbor method doesn't "
-                + "have a practical limit.");
+                + " up to about 20 cities\nwith the cheapest exit bound, 30 "
+                + "with the 1-tree bound and 64 with the Held-Karp\nbound.\n"
+                + "Held-Karp can handle up to about 25 cities, past 20 its "
+                + "tables spill into a\ntemporary file.\n"
+                + "Nearest neighbor, Lin-Kernighan, decomposition and "
+                + "parallel tempering methods\ndon't have a practical limit.");
+        int most = mostCities(method);
         CITY_AMOUNT = 0;
-        while (CITY_AMOUNT < 1) 
+        while (CITY_AMOUNT < 1 || CITY_AMOUNT > most) {
             CITY_AMOUNT = getInteger("Type the city amount:");
-        System.out.println("Read from existing file 'cities' "
-                + "(no file extension)?");
-        System.out.println("If not, a new file will be generated.");
+            if (CITY_AMOUNT > most) 
+                System.out.println("This method handles at most " + most 
+                        + " cities.");
+        }
+        System.out.println("Read from existing file '" + cityFile + "'?");
+        System.out.println("It may hold coordinates as text, in binary or in "
+                + "the TSPLIB format. If not, a new\nfile 'cities' will be "
+                + "generated.");
         boolean read = yesNo("Read cities file?");
         if (read) {
             try {
-                vertices = readCities(CITY_AMOUNT);
+                readCities(CITY_AMOUNT);
             } catch (Exception x) {
                 System.out.println("Something went wrong, creating a new file"
                         + " instead.");
@@ -68,42 +113,123 @@ public class Main {
             }
         }
         if (!read) {
-            makeCityFile(CITY_AMOUNT);
+            makeCityFile(CITY_AMOUNT, 
+                    yesNo("Write the new file in the binary format?"));
             try {
-                vertices = readCities(CITY_AMOUNT);
+                readCities(CITY_AMOUNT);
             } catch (Exception x) {
             }
         }
         System.out.println("The cities are:");
-        int c = 0;
-        for (Point2D.Double p : vertices) {
-            System.out.println(c + " at " + p);
-            c++;
+        for (int c = 0; c < CITY_AMOUNT; c++) {
+            System.out.println(c + " at (" + xs[c] + ", " + ys[c] + ")");
         }
+        chooseDistances();
+        System.out.println("Distances are kept as a " + distances + ".");
         long time1 = 0;
         long time2;
         int results[] = null;
         switch (method) {
             case 0:
+                boolean skipMirrored = yesNo("Skip mirrored tours?");
                 time1 = System.currentTimeMillis();
-                results = bruteForce();
+                results = bruteForce(skipMirrored);
                 break;
             case 1:
-                convertToMatrix();
+                LowerBound bound = chooseLowerBound();
+                int workers = -1;
+                while (workers < 0) workers = getInteger("How many worker "
+                        + "processes should branch-and-bound search with? 0 "
+                        + "searches\nwithin this one");
+                if (workers > 0) {
+                    time1 = System.currentTimeMillis();
+                    results = distributedBranchNBound(bound, workers);
+                    break;
+                }
+                int limit = -1;
+                while (limit < 0) limit = getInteger("How many seconds may "
+                        + "branch-and-bound search? 0 searches until the "
+                        + "optimum is proven");
+                boolean shortcuts = yesNo("Start from a heuristic tour and "
+                        + "skip mirrored tours?");
                 time1 = System.currentTimeMillis();
-                results = branchNBound();
+                results = branchNBound(bound, limit, shortcuts);
                 break;
             case 2:
                 time1 = System.currentTimeMillis();
                 results = nearestNeighbor();
+                break;
+            case 3:
+                boolean skip = yesNo("Start from a heuristic tour and skip "
+                        + "mirrored tours?");
+                time1 = System.currentTimeMillis();
+                results = parallelBruteForce(skip);
+                break;
+            case 4:
+                time1 = System.currentTimeMillis();
+                results = heldKarp();
+                break;
+            case 5:
+                int seconds = -1;
+                while (seconds < 0) seconds = getInteger("How many seconds "
+                        + "to spend kicking the tour out of local optima?");
+                time1 = System.currentTimeMillis();
+                results = linKernighan(seconds);
+                break;
+            case 6:
+                time1 = System.currentTimeMillis();
+                results = decomposition();
+                break;
+            case 7:
+                int rounds = -1;
+                while (rounds < 0) rounds = getInteger("How many rounds to "
+                        + "anneal for? The same rounds and seed always give "
+                        + "the same\ntour, 0 anneals for a time limit "
+                        + "instead");
+                int budget = 0;
+                while (rounds == 0 && budget < 1) budget = getInteger("How "
+                        + "many seconds to anneal for?");
+                int seed = getInteger("Which seed for the random moves?");
+                time1 = System.currentTimeMillis();
+                results = parallelTempering(budget, rounds, seed);
         }
         time2 = System.currentTimeMillis();
         double time = (time2 - time1) / 1000.0;
         System.out.println("Calculated path " + Arrays.toString(results)
                 + " with cost " + bestResult + " in " + time + " seconds.");
+        
+        //brute force, branch-and-bound and Held-Karp already give an optimal
+        //path, which moves judged by Euclidean distances could only worsen
+        boolean exact = method == 0 || method == 1 || method == 3 
+                || method == 4;
+        if (!exact && CITY_AMOUNT > 4 
+                && yesNo("Improve the path with 2-opt and Or-opt moves?")) {
+            double before = bestResult;
+            results = improve(results);
+            if (bestResult < before) {
+                System.out.println("Improved path " + Arrays.toString(results)
+                        + " with cost " + bestResult + ".");
+            } else {
+                System.out.println("The moves did not improve the path.");
+            }
+        }
         if (yesNo("Go again?")) runProcedure();
     }
     
+    /**
+     * @return most cities the given method of the menu can solve at all
+     */
+    private static int mostCities (int method) {
+        switch (method) {
+            case 1:
+                return BranchNBoundTSP.MAX_CITIES;
+            case 4:
+                return HeldKarpTSP.MAX_CITIES;
+            default:
+                return Integer.MAX_VALUE;
+        }
+    }
+    
     static int getInteger (String message) {
         System.out.println(message);
         Scanner scan = new Scanner(System.in);
@@ -135,167 +261,394 @@ public class Main {
     }
     
     /**
-     * Can handle up to 11 cities with worst time 5 seconds. 12 Cities and
-     * higher need more space than Java is allocated.
+     * Compares every possible tour and keeps the cheapest, see
+     * {@link BruteForceTSP#go}. 12 cities take a few seconds, 13 cities under
+     * a minute.
      */
     static int[] bruteForce () {
-        LinkedList<int[]> permutations = new LinkedList<>();
-        int[] vertices = new int[CITY_AMOUNT - 1];
-        for (int c = 0; c < vertices.length; c++) vertices[c] = c + 1;
-        int[] bestP = null;
-        double bestW = Double.POSITIVE_INFINITY;
-        double current;
-        for (int[] path : generateAllPermutations(vertices)) {
-            current = weight(0, path[0]);
-            for (int c = 1; c < path.length; c++) 
-                current += weight(path[c - 1], path[c]);
-            current += weight(path[path.length - 1], 0);
-            if (current < bestW) {
-                bestW = current;
-                bestP = path;
-            }
+        return bruteForce(true);
+    }
+    
+    /**
+     * @param skipMirrored whether to skip the reverse of every tour compared
+     */
+    static int[] bruteForce (boolean skipMirrored) {
+        BruteForceTSP solver = new BruteForceTSP(distances);
+        solver.setSymmetryBreaking(skipMirrored);
+        solver.go();
+        System.out.println("Compared " + solver.getTours() + " tours.");
+        bestResult = solver.getCost();
+        return solver.getTour();
+    }
+    
+    static LowerBound chooseLowerBound () {
+        System.out.println("Which lower bound should branch-and-bound use?\n"
+                + "0 - cheapest exit (cheapest way of leaving every city, fast "
+                + "to compute but weak)\n1 - 1-tree (minimum spanning tree of "
+                + "the remaining cities)\n2 - Held-Karp (1-tree with edge "
+                + "penalties optimized towards a tour, strongest)");
+        int choice = -1;
+        while (choice < 0 || choice > 2) choice = getInteger("Type 0 1 or 2:");
+        switch (choice) {
+            case 0:
+                return new CheapestExitBound();
+            case 1:
+                return new OneTreeBound();
+            default:
+                return new HeldKarpBound();
         }
-        int[] results = new int[CITY_AMOUNT + 1];
-        results[0] = 0;
-        System.arraycopy(bestP, 0, results, 1, bestP.length);
-        results[results.length - 1] = 0;
-        bestResult = bestW;
-        return results;
     }
     
     static int[] branchNBound () {
-        if (!useMatrix) {
-            convertToMatrix();
+        return branchNBound(new CheapestExitBound());
+    }
+    
+    static int[] branchNBound (LowerBound bound) {
+        return branchNBound(bound, 0);
+    }
+    
+    /**
+     * @param seconds time to search for before settling for the best tour
+     * found, 0 for no limit
+     */
+    static int[] branchNBound (LowerBound bound, int seconds) {
+        return branchNBound(bound, seconds, true);
+    }
+    
+    /**
+     * @param seconds time to search for before settling for the best tour
+     * found, 0 for no limit
+     * @param shortcuts whether to start from a heuristic tour and skip the
+     * reverse of every tour searched
+     */
+    static int[] branchNBound (LowerBound bound, int seconds, 
+            boolean shortcuts) 
+    {
+        BranchNBoundTSP solver = new BranchNBoundTSP(distances);
+        solver.setLowerBound(bound);
+        solver.setWarmStart(shortcuts);
+        solver.setSymmetryBreaking(shortcuts);
+        solver.setTimeLimit(seconds);
+        solver.setThreads(Runtime.getRuntime().availableProcessors());
+        SearchMetrics metrics = new SearchMetrics();
+        solver.setMetrics(metrics);
+        
+        //print the progress of long searches every few seconds
+        ScheduledExecutorService progress = 
+                Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "progress");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        progress.scheduleAtFixedRate(() -> System.out.println(
+                metrics.snapshot()), PROGRESS_SECONDS, PROGRESS_SECONDS, 
+                TimeUnit.SECONDS);
+        try {
+            solver.go();
+        } finally {
+            progress.shutdownNow();
         }
-        BranchNBoundTSP solver = new BranchNBoundTSP(adjMatrix);
+        System.out.println(metrics.snapshot());
+        for (SearchMetrics.Improvement improvement : metrics.getTimeline())
+            System.out.println("  improved at " + improvement);
+        if (!solver.isOptimal()) {
+            System.out.printf("Out of time, the tour is at most %.2f%% above "
+                    + "the optimum, which costs at least %.2f.%n", 
+                    100 * solver.getGap(), solver.getLowerBound());
+        }
+        bestResult = solver.getCost();
+        return solver.getTour();
+    }
+    
+    /**
+     * Search with worker processes started on this machine, see
+     * {@link DistributedBranchNBoundTSP}.
+     */
+    static int[] distributedBranchNBound (LowerBound bound, int workers) {
+        DistributedBranchNBoundTSP solver = 
+                new DistributedBranchNBoundTSP(distances);
+        solver.setLowerBound(bound);
+        solver.setWorkers(workers);
         solver.go();
+        System.out.println("Workers expanded " + solver.getExpandedNodes() 
+                + " nodes in " + solver.getSubtrees() + " subtrees, " 
+                + solver.getSplits() + " of them split off on request.");
         bestResult = solver.getCost();
         return solver.getTour();
     }
     
+    static int[] parallelBruteForce () {
+        return parallelBruteForce(true);
+    }
+    
     /**
-     * No limit, O(N) efficiency.
+     * @param shortcuts whether to start from a heuristic tour and skip the
+     * reverse of every tour compared
+     */
+    static int[] parallelBruteForce (boolean shortcuts) {
+        ParallelBruteForceTSP solver = new ParallelBruteForceTSP(distances);
+        solver.setWarmStart(shortcuts);
+        solver.setSymmetryBreaking(shortcuts);
+        solver.go();
+        System.out.println("Compared " + solver.getTours() + " tours.");
+        bestResult = solver.getCost();
+        return solver.getTour();
+    }
+    
+    static int[] heldKarp () {
+        HeldKarpTSP solver = new HeldKarpTSP(distances);
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        for (MemoryPoolMXBean pool : pools) pool.resetPeakUsage();
+        solver.go();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) 
+                peakHeap += pool.getPeakUsage().getUsed();
+        }
+        System.out.println("Tables took " + (solver.getTableBytes() >> 20) 
+                + " MB " + (solver.isMapped() ? "memory mapped" : "off-heap")
+                + ", peak heap use was " + (peakHeap >> 20) + " MB.");
+        bestResult = solver.getCost();
+        return solver.getTour();
+    }
+    
+    /**
+     * No limit, O(N log N) efficiency, see {@link NearestNeighborTSP#go}.
      */
     static int[] nearestNeighbor () {
-        int start = 0;
-        
-        int[] path = new int[CITY_AMOUNT + 1];
-        boolean[] out = new boolean[CITY_AMOUNT];
-        out[start] = true;
-        path[0] = start;
-        int current = start;
-        double best;
-        int bestNext = start;
-        double sum = 0;
-        double weight;
-        for (int c1 = 1; c1 < CITY_AMOUNT; c1++) {
-            best = Double.POSITIVE_INFINITY;
-            for (int c2 = 0; c2 < CITY_AMOUNT; c2++) {
-                if (out[c2]) continue;
-                weight = weight(current, c2);
-                if (best > weight) {
-                    best = weight;
-                    bestNext = c2;
-                }
-            }
-            sum += best;
-            current = bestNext;
-            out[current] = true;
-            path[c1] = current;
+        NearestNeighborTSP solver = new NearestNeighborTSP(xCoordinates(),
+                yCoordinates(), distances);
+        solver.go();
+        bestResult = solver.getCost();
+        return solver.getTour();
+    }
+    
+    /**
+     * Find a path with Lin-Kernighan chains of exchanges, then keep kicking
+     * it out of its local optimum for the given time.
+     */
+    static int[] linKernighan (int seconds) {
+        LinKernighanTSP solver = new LinKernighanTSP(xCoordinates(),
+                yCoordinates());
+        solver.setTimeLimit(seconds);
+        solver.go();
+        if (solver.getKicks() > 0) {
+            System.out.println("First local optimum " 
+                    + solver.getLocalOptimum() + ", " + solver.getKeptKicks()
+                    + " of " + solver.getKicks() + " kicks improved it.");
         }
-        sum += weight(current, start);
-        path[path.length - 1] = start;
-        bestResult = sum;
-        return path;
+        bestResult = cost(solver.getTour());
+        return solver.getTour();
     }
     
-    static void convertToMatrix () {
-        adjMatrix = new double[CITY_AMOUNT][CITY_AMOUNT];
-        for (int c1 = 0; c1 < CITY_AMOUNT; c1++) {
-            for (int c2 = 0; c2 < CITY_AMOUNT; c2++)
-                adjMatrix[c1][c2] = vertices[c1].distance(vertices[c2]);
-
+    /**
+     * Split the cities into parts, solve those in parallel and stitch their
+     * tours together, see {@link DecompositionTSP#go}.
+     */
+    static int[] decomposition () {
+        DecompositionTSP solver = new DecompositionTSP(xCoordinates(),
+                yCoordinates());
+        solver.go();
+        System.out.println("Stitched " + solver.getParts() + " parts into a "
+                + "path with Euclidean cost " + solver.getStitchedCost() 
+                + ", improving the seams brought it down to " 
+                + solver.getCost() + ".");
+        bestResult = cost(solver.getTour());
+        return solver.getTour();
+    }
+    
+    /**
+     * Anneal chains at different temperatures in parallel for the given
+     * time, or for the given rounds however long they take, see
+     * {@link ParallelTemperingTSP#go}.
+     *
+     * @param rounds rounds to run, or 0 to run for the given seconds
+     */
+    static int[] parallelTempering (int seconds, int rounds, long seed) {
+        ParallelTemperingTSP solver = new ParallelTemperingTSP(xCoordinates(),
+                yCoordinates(), distances);
+        if (rounds > 0) solver.setRounds(rounds);
+        else solver.setTimeLimit(seconds);
+        solver.setSeed(seed);
+        solver.go();
+        System.out.println("Ran " + solver.getRounds() + " rounds of "
+                + ParallelTemperingTSP.DEFAULT_CHAINS + " chains, "
+                + solver.getSwapsMade() + " of " + solver.getSwapsTried()
+                + " temperature swaps were made.");
+        bestResult = solver.getCost();
+        return solver.getTour();
+    }
+    
+    /**
+     * Improve a path with 2-opt and Or-opt local search, printing what each
+     * stage achieved and how long it took. The search judges moves by 
+     * Euclidean distances, so under other metrics of the city file it may
+     * make the path longer, in which case the path is kept as it was.
+     *
+     * @param path a path beginning and ending at city 0
+     * 
+     * @return the improved path, or the given one if it was no shorter
+     */
+    static int[] improve (int[] path) {
+        LocalSearch search = new LocalSearch(xCoordinates(), yCoordinates());
+        int[] results = search.improve(path);
+        for (LocalSearch.Stage stage : search.getStages()) 
+            System.out.println(stage);
+        double before = cost(path);
+        double after = cost(results);
+        if (after >= before) {
+            bestResult = before;
+            return path;
         }
-        useMatrix = true;
+        bestResult = after;
+        return results;
+    }
+    
+    /**
+     * Solve for the given cities from now on, as if they had been read from
+     * the city file.
+     *
+     * @param xCoords x coordinate of every city
+     * @param yCoords y coordinate of every city
+     */
+    static void useCities (double[] xCoords, double[] yCoords) {
+        CITY_AMOUNT = xCoords.length;
+        xs = xCoords;
+        ys = yCoords;
+        fileDistances = new CoordinateDistances(xs, ys);
+        metric = "EUCLIDEAN";
+        chooseDistances();
+    }
+    
+    /**
+     * @return x coordinate of every vertex, not to be changed
+     */
+    static double[] xCoordinates () {
+        return xs;
+    }
+    
+    /**
+     * @return y coordinate of every vertex, not to be changed
+     */
+    static double[] yCoordinates () {
+        return ys;
+    }
+    
+    /**
+     * Pick how to keep the distances between the vertices from their amount
+     * and the free heap, see {@link DistanceProvider#choose}, or take the
+     * ones kept for the same cities before.
+     */
+    static void chooseDistances () {
+        distances = CACHE.distances(InstanceKey.of(xs, ys, metric),
+                () -> DistanceProvider.choose(fileDistances));
     }
     
     static double weight (int v1, int v2) {
-        double result;
-        if (useMatrix) {
-            result = adjMatrix[v1][v2];
-        } else {
-            result = vertices[v1].distance(vertices[v2]);
-        }
-        return result;
+        return distances.distance(v1, v2);
     }
     
-    static List<int[]> generateAllPermutations (int[] elements) {
-        List<int[]> results = new LinkedList<>();
-        if (elements.length == 1) {
-            results.add(elements);
-        } else { 
-            int[] rest;
-            int[] perm;
-            for (int c = 0; c < elements.length; c++) {
-                rest = new int[elements.length - 1];
-                System.arraycopy(elements, 0, rest, 0, c);
-                System.arraycopy(elements, c + 1, rest, c, rest.length - c);
-                for (int[] r : generateAllPermutations(rest)) {
-                    perm = new int[elements.length];
-                    perm[0] = elements[c];
-                    System.arraycopy(r, 0, perm, 1, r.length);
-                    results.add(perm);
-                }
-            }
+    /**
+     * @return cost of a path under the distances of the city file, which
+     * solvers working on the coordinates alone may not know about
+     */
+    static double cost (int[] path) {
+        double sum = 0;
+        for (int c = 1; c < path.length; c++) 
+            sum += weight(path[c - 1], path[c]);
+        return sum;
+    }
+    
+    /**
+     * Rearrange the elements of 'elements' from index 'from' onward into the
+     * next permutation in lexicographic order, in place.
+     *
+     * @param elements array being permuted
+     * @param from elements before this index are left untouched
+     * 
+     * @return the leftmost index whose element changed, or -1 if the elements
+     * were already in their last permutation (in which case they are left
+     * as they are)
+     */
+    static int nextPermutation (int[] elements, int from) {
+        
+        //find the rightmost element smaller than its successor
+        int pivot = elements.length - 2;
+        while (pivot >= from && elements[pivot] > elements[pivot + 1]) pivot--;
+        if (pivot < from) return -1;
+        
+        //swap it with the rightmost element larger than it
+        int swap = elements.length - 1;
+        while (elements[swap] < elements[pivot]) swap--;
+        int temp = elements[pivot];
+        elements[pivot] = elements[swap];
+        elements[swap] = temp;
+        
+        //the elements after the pivot are in descending order, reverse them
+        for (int lo = pivot + 1, hi = elements.length - 1; lo < hi; lo++, hi--) {
+            temp = elements[lo];
+            elements[lo] = elements[hi];
+            elements[hi] = temp;
         }
-       return results;
+        return pivot;
     }
     
     /**
-     * Write a random city data file for 'amount' cities.
+     * Write a random city data file 'cities' for 'amount' cities, which
+     * becomes the file cities are read from.
      * 
      * @param amount amount of cities to generate
+     * @param binary write the binary format of {@link CityFile} instead of
+     * text, which is smaller and much faster to read
      */
-    static void makeCityFile (int amount) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter("cities"))) {
-            double randomX;
-            double randomY;
-            while (amount > 0) {
-                randomX = randomDouble(-1_000, 1_000, 2);
-                randomY = randomDouble(-1_000, 1_000, 2);
-                writer.print(randomX + "," + randomY + "\n");
-                amount--;
+    static void makeCityFile (int amount, boolean binary) {
+        cityFile = "cities";
+        if (binary) {
+            double[] randomXs = new double[amount];
+            double[] randomYs = new double[amount];
+            for (int c = 0; c < amount; c++) {
+                randomXs[c] = randomDouble(-1_000, 1_000, 2);
+                randomYs[c] = randomDouble(-1_000, 1_000, 2);
+            }
+            try {
+                CityFile.writeBinary(cityFile, randomXs, randomYs);
+            } catch (IOException x) {
+            }
+        } else {
+            try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                    new FileWriter(cityFile)))) {
+                double randomX;
+                double randomY;
+                while (amount > 0) {
+                    randomX = randomDouble(-1_000, 1_000, 2);
+                    randomY = randomDouble(-1_000, 1_000, 2);
+                    writer.print(randomX + "," + randomY + "\n");
+                    amount--;
+                }
+            } catch (IOException x) {
             }
-        } catch (IOException x) {
         }
-        useMatrix = false;
+        distances = null;
     }
     
     /**
-     * Read cities from file and return as an array of Point2D objects with
-     * double precision.
+     * Read cities from the city file into the coordinate arrays, printing
+     * how long it took.
      * 
      * @param amount amount of cities to read, must not be greater than than
-     * how many can be found in the file "cities" (no file extension) in the
-     * code/jar/program directory
-     * 
-     * @return all read cities data as an array of 2D points holding doubles
-     * data
+     * how many can be found in the city file
      */
-    static Point2D.Double[] readCities (int amount) throws FileNotFoundException 
-    {
-        
-        Point2D.Double[] results = new Point2D.Double[amount];
-        File f = new File("cities");
-        Scanner scan = new Scanner(f).useDelimiter("[,\\s]");
-        double x;
-        double y;
-        for (int c = 0; c < amount; c++) {
-            x = scan.nextDouble();
-            y = scan.nextDouble();
-            results[c] = new Point2D.Double(x, y);
-        }
-        return results;
+    static void readCities (int amount) throws IOException {
+        long start = System.nanoTime();
+        CityFile file = CityFile.read(cityFile, amount);
+        xs = file.getXs();
+        ys = file.getYs();
+        fileDistances = file.getDistances();
+        metric = file.getMetric();
+        distances = null;
+        System.out.println("Read " + amount + " cities from the " 
+                + file.getFormat() + " file in " 
+                + (System.nanoTime() - start) / 1e9 + " seconds.");
     }
     
     static double randomDouble (double min, double max, 
@@ -0,0 +1,40 @@
+package Main;
+
+/**
+ * Distances read from a full adjacency matrix, which may be asymmetric.
+ */
+public class MatrixDistances implements DistanceProvider {
+
+    //adjacency matrix
+    private final double[][] ADJ_MATRIX;
+
+    /**
+     * @param adjacencyMatrix a 2D array of costs where the first dimension
+     * would access the city being traveled from and the second the city being
+     * traveled to
+     */
+    public MatrixDistances (double[][] adjacencyMatrix) {
+        ADJ_MATRIX = adjacencyMatrix;
+    }
+
+    @Override
+    public int size () {
+        return ADJ_MATRIX.length;
+    }
+
+    @Override
+    public double distance (int from, int to) {
+        return ADJ_MATRIX[from][to];
+    }
+
+    @Override
+    public long bytes () {
+        long n = ADJ_MATRIX.length;
+        return n * n * Double.BYTES;
+    }
+
+    @Override
+    public String toString () {
+        return "adjacency matrix";
+    }
+}
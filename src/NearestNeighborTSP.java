@@ -0,0 +1,71 @@
+package Main;
+
+public class NearestNeighborTSP {
+
+    //city coordinates
+    private final double[] XS;
+    private final double[] YS;
+
+    //distances between cities
+    private final DistanceProvider DISTANCES;
+
+    //saved cost of the tour found
+    private double bestWeight;
+
+    //the complete tour found
+    private int[] bestPath;
+
+    /**
+     * Creates an object ready to build a tour of the given cities by always
+     * travelling to the closest city not yet visited.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param distances cost of travelling between any two cities, which the
+     * tour cost is summed from
+     */
+    public NearestNeighborTSP (double[] xs, double[] ys,
+            DistanceProvider distances)
+    {
+        XS = xs;
+        YS = ys;
+        DISTANCES = distances;
+    }
+
+    /**
+     * No limit, O(N log N) efficiency: the closest remaining city is looked
+     * up in a k-d tree the visited cities are removed from, instead of
+     * comparing against every remaining city.
+     */
+    public void go () {
+        int start = 0;
+        int cities = XS.length;
+
+        int[] path = new int[cities + 1];
+        KDTree remaining = new KDTree(XS, YS);
+        remaining.remove(start);
+        path[0] = start;
+        int current = start;
+        int next;
+        double sum = 0;
+        for (int c1 = 1; c1 < cities; c1++) {
+            next = remaining.nearest(XS[current], YS[current]);
+            remaining.remove(next);
+            sum += DISTANCES.distance(current, next);
+            current = next;
+            path[c1] = current;
+        }
+        sum += DISTANCES.distance(current, start);
+        path[path.length - 1] = start;
+        bestWeight = sum;
+        bestPath = path;
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+}
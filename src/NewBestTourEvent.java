@@ -0,0 +1,28 @@
+package Main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event committed whenever branch-and-bound finds a tour
+ * better than its best so far. Recorded only while a recording has it
+ * enabled, which it is by default, and free otherwise.
+ */
+@Name("Main.NewBestTour")
+@Label("New Best Tour")
+@Category({"Travelling Salesman", "Branch and Bound"})
+@Description("Branch-and-bound found a tour better than its best so far")
+@StackTrace(false)
+class NewBestTourEvent extends jdk.jfr.Event {
+
+    @Label("Cost")
+    double cost;
+
+    @Label("Nodes Expanded")
+    @Description("Nodes expanded by the run so far, as last published by "
+            + "its workers")
+    long expanded;
+}
@@ -0,0 +1,180 @@
+package Main;
+
+/**
+ * Bounds a partial tour from city 0 to city 'last' by its cost plus the cost
+ * of a minimum 1-tree over the remaining cities. The remaining cities still
+ * have to be travelled as a path joined to 'last' at one end and to city 0 at
+ * the other, and that path costs at least as much as a minimum spanning tree
+ * of the remaining cities plus the cheapest edge from each end into them.
+ * Takes O(N^2) per bound using Prim's algorithm.
+ *
+ * The tree has no direction, so distances which differ by direction are
+ * replaced by the cheaper of the two ways between every pair of cities,
+ * which no tour can beat either way round.
+ */
+public class OneTreeBound implements LowerBound {
+    
+    //version of the serialized form workers receive, change along with
+    //the fields
+    private static final long serialVersionUID = 1L;
+    
+    //copy of the distances, small enough with at most 64 cities to read
+    //directly in the inner loops
+    protected double[][] adjMatrix;
+    
+    //penalty added to the cost of every edge touching a remaining city, the
+    //1-tree cost is reduced by twice the penalties so any penalties still
+    //give a lower bound, they are always 0 unless changed by a subclass
+    protected double[] penalty;
+    
+    //how many 1-tree edges touch each remaining city, filled by oneTree
+    protected int[] degree;
+    
+    //scratch space for Prim's algorithm, indexed by position in the tree:
+    //the remaining cities, the cheapest edge joining each to the tree built
+    //so far and the tree city at the other end of that edge
+    private int[] cities;
+    private double[] key;
+    private int[] link;
+    
+    @Override
+    public void start (DistanceProvider distances) {
+        int n = distances.size();
+        adjMatrix = distances.toMatrix();
+        if (!distances.isSymmetric()) {
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double cheaper = Math.min(adjMatrix[i][j], adjMatrix[j][i]);
+                    adjMatrix[i][j] = cheaper;
+                    adjMatrix[j][i] = cheaper;
+                }
+            }
+        }
+        penalty = new double[n];
+        degree = new int[n];
+        cities = new int[n];
+        key = new double[n];
+        link = new int[n];
+    }
+    
+    @Override
+    public double bound (int last, double partial, long open, double cutoff) {
+        return partial + oneTree(last, open);
+    }
+    
+    @Override
+    public LowerBound copy () {
+        return new OneTreeBound();
+    }
+    
+    /**
+     * Compute the cost of a minimum 1-tree over the cities in 'open' joined
+     * to city 'last' and to city 0, with every edge costing its weight plus
+     * the penalties of the remaining cities it touches, less twice the 
+     * penalties of the remaining cities. Fills {@link #degree} for the 
+     * remaining cities.
+     *
+     * @param last last city on the partial tour, if this is city 0 the tree
+     * is joined to city 0 by its two cheapest edges instead
+     * @param open bitmask of the cities not on the partial tour, never empty
+     *
+     * @return the cost of the 1-tree
+     */
+    protected double oneTree (int last, long open) {
+        int size = 0;
+        int c;
+        for (long rest = open; rest != 0; rest &= rest - 1) {
+            c = Long.numberOfTrailingZeros(rest);
+            cities[size++] = c;
+            degree[c] = 0;
+        }
+        
+        //grow a minimum spanning tree from the first remaining city
+        double total = 0;
+        double w;
+        int root = cities[0];
+        for (int i = 1; i < size; i++) {
+            key[i] = weight(root, cities[i]);
+            link[i] = root;
+        }
+        for (int added = 1; added < size; added++) {
+            
+            //move the city with the cheapest edge into the tree to the front
+            //of the cities not yet in it
+            int best = added;
+            for (int i = added + 1; i < size; i++) {
+                if (key[i] < key[best]) best = i;
+            }
+            swap(best, added);
+            c = cities[added];
+            total += key[added];
+            degree[c]++;
+            degree[link[added]]++;
+            
+            //update the cheapest edges into the tree
+            for (int i = added + 1; i < size; i++) {
+                w = weight(c, cities[i]);
+                if (w < key[i]) {
+                    key[i] = w;
+                    link[i] = c;
+                }
+            }
+        }
+        
+        //join the ends of the partial tour to the tree
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < size; i++) {
+            c = cities[i];
+            if (first < 0 || endWeight(0, c) < endWeight(0, first)) {
+                second = first;
+                first = c;
+            } else if (second < 0 || endWeight(0, c) < endWeight(0, second)) {
+                second = c;
+            }
+        }
+        total += endWeight(0, first);
+        degree[first]++;
+        if (last == 0) {
+            if (second < 0) second = first;
+        } else {
+            second = cities[0];
+            for (int i = 1; i < size; i++) {
+                if (endWeight(last, cities[i]) < endWeight(last, second))
+                    second = cities[i];
+            }
+        }
+        total += endWeight(last, second);
+        degree[second]++;
+        
+        for (int i = 0; i < size; i++) total -= 2 * penalty[cities[i]];
+        return total;
+    }
+    
+    private void swap (int i, int j) {
+        int city = cities[i];
+        cities[i] = cities[j];
+        cities[j] = city;
+        double k = key[i];
+        key[i] = key[j];
+        key[j] = k;
+        int l = link[i];
+        link[i] = link[j];
+        link[j] = l;
+    }
+    
+    /**
+     * @return penalized cost of an edge between two remaining cities
+     */
+    private double weight (int city1, int city2) {
+        return adjMatrix[city1][city2] + penalty[city1] + penalty[city2];
+    }
+    
+    /**
+     * @return penalized cost of an edge from an end of the partial tour to a
+     * remaining city
+     */
+    private double endWeight (int end, int city) {
+        return adjMatrix[end][city] + penalty[city];
+    }
+}
@@ -0,0 +1,359 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ParallelBruteForceTSP {
+
+    //distances between cities
+    private final DistanceProvider DISTANCES;
+
+    //amount of worker threads to search with
+    private final int PARALLELISM;
+
+    //bits of the cheapest full tour cost found by any worker so far, costs are
+    //never negative so their bits order the same way the doubles do
+    private final AtomicLong bestBits = new AtomicLong();
+
+    //saved cost of best tour found
+    private double bestWeight;
+
+    //the complete tour holding the best cost
+    private int[] bestPath;
+
+    //whether to start the runs with the cost of a tour built by WarmStart
+    private boolean warmStart = true;
+
+    //whether to skip the reverse of every tour, if the distances allow it,
+    //and whether the current run does
+    private boolean breakSymmetry = true;
+    private boolean mirrored;
+
+    //amount of tours compared by all workers
+    private final LongAdder compared = new LongAdder();
+
+    //amount of tours compared by the last run
+    private long tours;
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given adjacency
+     * matrix by comparing all tours, using one worker per available processor.
+     *
+     * @param adjacencyMatrix a 2D array of costs where the first dimension
+     * would access the city being traveled from and the second the city being
+     * traveled to
+     */
+    public ParallelBruteForceTSP (double[][] adjacencyMatrix) {
+        this(adjacencyMatrix, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given adjacency
+     * matrix by comparing all tours.
+     *
+     * @param adjacencyMatrix a 2D array of costs where the first dimension
+     * would access the city being traveled from and the second the city being
+     * traveled to
+     * @param parallelism amount of worker threads to search with
+     */
+    public ParallelBruteForceTSP (double[][] adjacencyMatrix, int parallelism) {
+        this(new MatrixDistances(adjacencyMatrix), parallelism);
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances by comparing all tours, using one worker per available
+     * processor.
+     *
+     * @param distances cost of travelling between any two cities
+     */
+    public ParallelBruteForceTSP (DistanceProvider distances) {
+        this(distances, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an object ready to answer the TSP problem on the given
+     * distances by comparing all tours.
+     *
+     * @param distances cost of travelling between any two cities
+     * @param parallelism amount of worker threads to search with
+     */
+    public ParallelBruteForceTSP (DistanceProvider distances, int parallelism) {
+        DISTANCES = distances;
+        PARALLELISM = parallelism;
+    }
+
+    /**
+     * Set whether the next runs start out with the cost of a nearest
+     * neighbor tour improved by 2-opt and Or-opt moves as the cheapest found,
+     * so prefixes are pruned against it from the first tour on.
+     *
+     * @param enabled true by default
+     */
+    public void setWarmStart (boolean enabled) {
+        warmStart = enabled;
+    }
+
+    /**
+     * Set whether the next runs skip the reverse of every tour when the
+     * distances are the same both ways, which halves the tours compared.
+     *
+     * @param enabled true by default
+     */
+    public void setSymmetryBreaking (boolean enabled) {
+        breakSymmetry = enabled;
+    }
+
+    /**
+     * Splits the tours by the first two cities visited after city 0 and
+     * searches every such partition as its own fork-join task. Each task keeps
+     * its own best tour, and the results are reduced once all tasks finish.
+     * Workers share the cheapest cost found so far so that a prefix which
+     * already costs more is skipped together with all of its tours.
+     *
+     * With symmetric distances only tours visiting city 1 before city 2 are
+     * compared, like {@link BruteForceTSP#go} does, and partitions whose
+     * first two cities put city 2 first aren't searched at all.
+     */
+    public void go () {
+        int cities = DISTANCES.size();
+        bestBits.set(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+        compared.reset();
+        if (cities == 1) {
+            bestWeight = 0;
+            bestPath = new int[2];
+            tours = 1;
+            return;
+        }
+        boolean symmetric = cities >= 3 && DISTANCES.isSymmetric();
+        mirrored = breakSymmetry && symmetric;
+        int[] warmTour = null;
+        double warmCost = Double.POSITIVE_INFINITY;
+        if (warmStart) {
+            warmTour = WarmStart.tour(DISTANCES, symmetric);
+            warmCost = WarmStart.cost(DISTANCES, warmTour);
+            offer(warmCost);
+        }
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            Result best = pool.invoke(new SplitTask());
+
+            //no tour found is cheaper than the one started with
+            if (best == null || best.cost >= warmCost) {
+                bestWeight = warmCost;
+                bestPath = warmTour;
+            } else {
+                bestWeight = best.cost;
+                bestPath = new int[cities + 1];
+                System.arraycopy(best.path, 0, bestPath, 1, best.path.length);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        tours = compared.sum();
+    }
+
+    private double weight (int city1, int city2) {
+        return DISTANCES.distance(city1, city2);
+    }
+
+    private double bound () {
+        return Double.longBitsToDouble(bestBits.get());
+    }
+
+    /**
+     * Publish a full tour cost to all workers if it beats the current best.
+     */
+    private void offer (double cost) {
+        long bits = Double.doubleToLongBits(cost);
+        long current = bestBits.get();
+        while (bits < current && !bestBits.compareAndSet(current, bits)) {
+            current = bestBits.get();
+        }
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return amount of tours compared by the last run, not counting those
+     * skipped by pruning their prefix
+     */
+    public long getTours () {
+        return tours;
+    }
+
+    /**
+     * Cheapest tour found within one partition.
+     */
+    private static class Result {
+
+        //cost of the full tour, including the return to city 0
+        private final double cost;
+
+        //cities visited between leaving and returning to city 0
+        private final int[] path;
+
+        private Result (double cost, int[] path) {
+            this.cost = cost;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Forks one task per prefix and reduces their results.
+     */
+    private class SplitTask extends RecursiveTask<Result> {
+
+        @Override
+        protected Result compute () {
+            int length = DISTANCES.size() - 1;
+            int fixed = Math.min(2, length);
+            List<PrefixTask> tasks = new ArrayList<>();
+            for (int first = 1; first <= length; first++) {
+                if (fixed == 1) {
+                    tasks.add(new PrefixTask(new int[]{first}));
+                    continue;
+                }
+                for (int second = 1; second <= length; second++) {
+                    if (second == first || mirrored
+                            && (first == 2 || second == 2 && first != 1))
+                        continue;
+                    tasks.add(new PrefixTask(new int[]{first, second}));
+                }
+            }
+            invokeAll(tasks);
+            Result best = null;
+            Result current;
+            for (PrefixTask task : tasks) {
+                current = task.join();
+                if (current != null && (best == null || current.cost < best.cost))
+                    best = current;
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Compares every tour starting with the given cities after city 0.
+     */
+    private class PrefixTask extends RecursiveTask<Result> {
+
+        //cities fixed at the front of every tour of this partition
+        private final int[] prefixCities;
+
+        private PrefixTask (int[] prefixCities) {
+            this.prefixCities = prefixCities;
+        }
+
+        @Override
+        protected Result compute () {
+            int fixed = prefixCities.length;
+            int[] path = new int[DISTANCES.size() - 1];
+            System.arraycopy(prefixCities, 0, path, 0, fixed);
+            boolean[] used = new boolean[DISTANCES.size()];
+            for (int city : prefixCities) used[city] = true;
+            int c = fixed;
+            for (int city = 1; city < used.length; city++) {
+                if (!used[city]) path[c++] = city;
+            }
+
+            int[] bestP = null;
+            double bestW = Double.POSITIVE_INFINITY;
+
+            //prefix[c] holds the cost of travelling from city 0 through path[c]
+            double[] prefix = new double[path.length];
+            int last = path.length - 1;
+            double current;
+            boolean pruned;
+            long count = 0;
+
+            //leftmost position of the path which differs from the previous
+            //one, and from the last one compared
+            int changed = 0;
+            int stale = 0;
+
+            //position of whichever of cities 1 and 2 comes first, only
+            //searched for after the fixed cities if they hold neither
+            boolean ordered = !mirrored || used[1] || used[2];
+            int pair = fixed;
+            do {
+                stale = Math.min(stale, changed);
+                if (!ordered) {
+                    if (changed <= pair) {
+                        pair = Math.max(changed, fixed);
+                        while (path[pair] != 1 && path[pair] != 2) pair++;
+                    }
+
+                    //the path after the pivot of the last permutation step,
+                    //and so after city 2, is in ascending order
+                    if (path[pair] == 2) {
+                        reverse(path, pair + 1);
+                        changed = Main.nextPermutation(path, fixed);
+                        continue;
+                    }
+                }
+                pruned = false;
+                for (c = stale; c <= last; c++) {
+                    prefix[c] = c == 0 ? weight(0, path[0])
+                            : prefix[c - 1] + weight(path[c - 1], path[c]);
+                    if (c < last && prefix[c] >= bound()) {
+
+                        //the fixed prefix alone is too expensive
+                        if (c < fixed) {
+                            compared.add(count);
+                            return toResult(bestW, bestP);
+                        }
+
+                        //jump past every tour sharing this prefix by putting
+                        //the rest of the path into its last permutation
+                        sortDescending(path, c + 1);
+                        pruned = true;
+                        break;
+                    }
+                }
+                stale = c;
+                if (!pruned) {
+                    count++;
+                    current = prefix[last] + weight(path[last], 0);
+                    if (current < bestW) {
+                        bestW = current;
+                        bestP = path.clone();
+                        offer(current);
+                    }
+                }
+                changed = Main.nextPermutation(path, fixed);
+            } while (changed >= 0);
+            compared.add(count);
+            return toResult(bestW, bestP);
+        }
+
+        private Result toResult (double cost, int[] path) {
+            return path == null ? null : new Result(cost, path);
+        }
+
+        private void sortDescending (int[] elements, int from) {
+            Arrays.sort(elements, from, elements.length);
+            reverse(elements, from);
+        }
+
+        private void reverse (int[] elements, int from) {
+            int temp;
+            for (int lo = from, hi = elements.length - 1; lo < hi; lo++, hi--) {
+                temp = elements[lo];
+                elements[lo] = elements[hi];
+                elements[hi] = temp;
+            }
+        }
+    }
+}
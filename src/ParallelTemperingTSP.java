@@ -0,0 +1,413 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Simulated annealing chains at a ladder of fixed temperatures, run in
+ * parallel and trading tours between neighboring temperatures, for
+ * mid-size instances of thousands to tens of thousands of cities. Every
+ * chain keeps its own {@link TwoLevelTour} and {@link SplittableRandom} and
+ * proposes 2-opt and Or-opt moves towards the nearest neighbors of a random
+ * city, whose change in cost takes a few lookups in the distance provider.
+ * A move which shortens the tour is always taken and one which lengthens it
+ * by d with probability e^(-d/T), so the hot chains wander over many tours
+ * while the cold ones settle into the best ones they are handed.
+ *
+ * The chains run in rounds of {@link #ROUND_MOVES} proposals each, then
+ * chains at neighboring temperatures swap temperatures with the usual
+ * replica exchange probability. Chains only ever touch their own state
+ * during a round and the swaps are drawn from a generator of their own, so
+ * the tour found depends only on the seed, the amount of chains and the
+ * amount of rounds, never on how many threads run them. With a round limit
+ * the same seed always gives the same tour, with a time limit instead the
+ * amount of rounds, and so the tour, depends on the speed of the machine.
+ */
+public class ParallelTemperingTSP {
+
+    //amount of chains by default
+    public static final int DEFAULT_CHAINS = 8;
+
+    //seconds to run by default
+    public static final double DEFAULT_SECONDS = 10;
+
+    //moves every chain proposes between swaps, at least
+    public static final int ROUND_MOVES = 20_000;
+
+    //hottest and coldest temperature as a share of the average edge of the
+    //starting tour
+    private static final double HOTTEST = 0.3;
+    private static final double COLDEST = 0.01;
+
+    //longest segment Or-opt moves
+    private static final int MAX_SEGMENT = 3;
+
+    //city coordinates
+    private final double[] X;
+    private final double[] Y;
+
+    //cost of travelling between cities
+    private final DistanceProvider DISTANCES;
+
+    //amount of cities
+    private final int N;
+
+    //amount of neighbors per city
+    private final int K;
+
+    //the K nearest neighbors of every city, closest first, city c's at
+    //NEIGHBORS[c * K] to NEIGHBORS[c * K + K - 1]
+    private final int[] NEIGHBORS;
+
+    //seconds to run for, and rounds to run for instead if more than 0
+    private double timeLimit = DEFAULT_SECONDS;
+    private int roundLimit;
+
+    //seed of the chains and of the swaps between them
+    private long seed = 1;
+
+    //amount of chains and of threads running them
+    private int chains = DEFAULT_CHAINS;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    //the complete tour holding the best cost
+    private int[] bestPath;
+
+    //saved cost of best tour found
+    private double bestWeight;
+
+    //rounds run and swaps tried and made in the last run
+    private int rounds;
+    private int swapsTried;
+    private int swapsMade;
+
+    /**
+     * Prepare to solve the TSP over the given cities, finding the neighbors
+     * of every city with a k-d tree in O(N log N).
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param distances cost of travelling between the cities
+     */
+    public ParallelTemperingTSP (double[] xs, double[] ys,
+            DistanceProvider distances)
+    {
+        this(xs, ys, distances, null);
+    }
+
+    /**
+     * Prepare to solve the TSP over the given cities, reusing the neighbors
+     * a {@link LocalSearch} found for them.
+     *
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param distances cost of travelling between the cities
+     * @param found what {@link LocalSearch#getNeighbors} returned for the
+     * same cities with {@link LocalSearch#DEFAULT_NEIGHBORS} neighbors, or
+     * null to find them
+     */
+    public ParallelTemperingTSP (double[] xs, double[] ys,
+            DistanceProvider distances, int[] found)
+    {
+        X = xs;
+        Y = ys;
+        DISTANCES = distances;
+        N = xs.length;
+        LocalSearch search = new LocalSearch(xs, ys,
+                LocalSearch.DEFAULT_NEIGHBORS, found);
+        NEIGHBORS = search.getNeighbors();
+        K = N == 0 ? 0 : NEIGHBORS.length / N;
+    }
+
+    /**
+     * @param seconds how long to run, 10 seconds by default
+     */
+    public void setTimeLimit (double seconds) {
+        timeLimit = seconds;
+    }
+
+    /**
+     * Run a fixed amount of rounds however long they take, which makes the
+     * tour depend only on the seed and the amount of chains.
+     *
+     * @param amount rounds to run, or 0 to run until the time limit, the
+     * default
+     */
+    public void setRounds (int amount) {
+        roundLimit = Math.max(0, amount);
+    }
+
+    /**
+     * @param seed seed of the chains and the swaps, 1 by default
+     */
+    public void setSeed (long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param amount amount of chains, at least 2, {@link #DEFAULT_CHAINS}
+     * by default
+     */
+    public void setChains (int amount) {
+        chains = Math.max(2, amount);
+    }
+
+    /**
+     * @param amount amount of threads running the chains, the processor
+     * count by default, no more than the chains are used
+     */
+    public void setThreads (int amount) {
+        threads = Math.max(1, amount);
+    }
+
+    /**
+     * Anneal every chain from a nearest neighbor tour, round after round,
+     * until the rounds or the time are used up, keeping the shortest tour
+     * any chain held at the end of a round.
+     */
+    public void go () {
+        rounds = swapsTried = swapsMade = 0;
+        if (N < 5) {
+
+            //too few cities to anneal, and few enough to compare every tour
+            bestPath = new int[N + 1];
+            bestWeight = 0;
+            if (N > 0) {
+                BruteForceTSP exact = new BruteForceTSP(DISTANCES);
+                exact.go();
+                bestPath = exact.getTour();
+                bestWeight = exact.getCost();
+            }
+            return;
+        }
+        long deadline = System.nanoTime() + (long) (timeLimit * 1e9);
+        int[] order = nearestNeighborTour();
+        bestPath = new int[N + 1];
+        System.arraycopy(order, 0, bestPath, 0, N);
+        bestWeight = cost(bestPath);
+
+        //temperatures from coldest to hottest, spaced geometrically after
+        //the first, 0, which only ever takes moves that shorten its tour and
+        //so settles every tour handed to it into a local optimum
+        double edge = bestWeight / N;
+        double[] temperature = new double[chains];
+        for (int t = 1; t < chains; t++) {
+            temperature[t] = edge * COLDEST * Math.pow(HOTTEST / COLDEST,
+                    (t - 1) / (double) Math.max(1, chains - 2));
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        Chain[] chain = new Chain[chains];
+        List<Chain> all = new ArrayList<>();
+        for (int c = 0; c < chains; c++) {
+            chain[c] = new Chain(order, bestWeight, random.split(),
+                    temperature[c]);
+            all.add(chain[c]);
+        }
+        int moves = Math.max(ROUND_MOVES, N);
+        ForkJoinPool pool = new ForkJoinPool(Math.min(threads, chains));
+        try {
+            while (roundLimit > 0 ? rounds < roundLimit
+                    : System.nanoTime() < deadline) {
+                for (Chain c : all) c.moves = moves;
+                for (Future<Void> done : pool.invokeAll(all)) done.get();
+                rounds++;
+                for (Chain c : all) keepIfBest(c, order);
+
+                //swap temperatures between every other pair of neighbors,
+                //starting with the coldest pair on even rounds
+                for (int t = rounds % 2; t + 1 < chains; t += 2) {
+                    Chain colder = chain[t];
+                    Chain hotter = chain[t + 1];
+                    double exponent = (1 / colder.temperature
+                            - 1 / hotter.temperature)
+                            * (colder.cost - hotter.cost);
+                    swapsTried++;
+                    if (exponent >= 0
+                            || random.nextDouble() < Math.exp(exponent)) {
+                        swapsMade++;
+                        chain[t] = hotter;
+                        chain[t + 1] = colder;
+                        hotter.temperature = temperature[t];
+                        colder.temperature = temperature[t + 1];
+                    }
+                }
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException x) {
+            throw new IllegalStateException(x.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Keep the tour of a chain if it is the shortest so far, and set the
+     * chain's cost to the exact sum so rounding errors of the moves don't
+     * add up.
+     */
+    private void keepIfBest (Chain chain, int[] scratch) {
+        chain.tour.toArray(0, scratch);
+        double sum = 0;
+        for (int c = 0; c < N; c++) {
+            sum += DISTANCES.distance(scratch[c], scratch[(c + 1) % N]);
+        }
+        chain.cost = sum;
+        if (sum < bestWeight) {
+            bestWeight = sum;
+            System.arraycopy(scratch, 0, bestPath, 0, N);
+            bestPath[N] = bestPath[0];
+        }
+    }
+
+    /**
+     * One annealing chain, which proposes moves at its current temperature
+     * for a round when called.
+     */
+    private class Chain implements Callable<Void> {
+
+        private final TwoLevelTour tour;
+        private final SplittableRandom random;
+
+        //cost of the tour, temperature and moves to propose next round
+        private double cost;
+        private double temperature;
+        private int moves;
+
+        Chain (int[] order, double cost, SplittableRandom random,
+                double temperature)
+        {
+            tour = new TwoLevelTour(order);
+            this.cost = cost;
+            this.random = random;
+            this.temperature = temperature;
+        }
+
+        @Override
+        public Void call () {
+            for (int m = 0; m < moves; m++) {
+                int a = random.nextInt(N);
+                int c = NEIGHBORS[a * K + random.nextInt(K)];
+                if (random.nextBoolean()) {
+                    twoOpt(a, c, random.nextBoolean());
+                } else {
+                    orOpt(a, c, 1 + random.nextInt(MAX_SEGMENT));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Propose replacing an edge of city a and the edge of city c on the
+         * same side with the edge between them and the edge between their
+         * other ends.
+         */
+        private void twoOpt (int a, int c, boolean forward) {
+            int b = forward ? tour.next(a) : tour.previous(a);
+            int d = forward ? tour.next(c) : tour.previous(c);
+            if (c == b || d == a) return;
+            double delta = distance(a, c) + distance(b, d)
+                    - distance(a, b) - distance(c, d);
+            if (accept(delta)) {
+                tour.move(a, b, c, d);
+                cost += delta;
+            }
+        }
+
+        /**
+         * Propose moving the segment of the given length starting at city s
+         * to between city c and the city after it, which swaps the segment
+         * with the part of the tour from after it up to c.
+         */
+        private void orOpt (int s, int c, int length) {
+            int last = s;
+            for (int l = 1; l < length; l++) {
+                last = tour.next(last);
+                if (last == c) return;
+            }
+            int p = tour.previous(s);
+            int f = tour.next(last);
+            int d = tour.next(c);
+            if (c == s || c == p || d == p || f == p) return;
+            double delta = distance(p, f) + distance(c, s)
+                    + distance(last, d) - distance(p, s)
+                    - distance(last, f) - distance(c, d);
+            if (accept(delta)) {
+
+                //reversing both parts together and then each on its own
+                //swaps them
+                tour.move(p, s, c, d);
+                tour.move(p, c, f, last);
+                tour.move(c, last, s, d);
+                cost += delta;
+            }
+        }
+
+        private boolean accept (double delta) {
+            return delta <= 0
+                    || random.nextDouble() < Math.exp(-delta / temperature);
+        }
+    }
+
+    /**
+     * @return a tour starting at city 0 which always travels to the nearest
+     * city not visited yet
+     */
+    private int[] nearestNeighborTour () {
+        KDTree remaining = new KDTree(X, Y);
+        int[] order = new int[N];
+        int current = 0;
+        remaining.remove(current);
+        for (int c = 1; c < N; c++) {
+            current = remaining.nearest(X[current], Y[current]);
+            remaining.remove(current);
+            order[c] = current;
+        }
+        return order;
+    }
+
+    private double distance (int a, int b) {
+        return DISTANCES.distance(a, b);
+    }
+
+    private double cost (int[] path) {
+        double sum = 0;
+        for (int c = 1; c < path.length; c++)
+            sum += distance(path[c - 1], path[c]);
+        return sum;
+    }
+
+    public int[] getTour () {
+        return bestPath;
+    }
+
+    public double getCost () {
+        return bestWeight;
+    }
+
+    /**
+     * @return amount of rounds of the last run
+     */
+    public int getRounds () {
+        return rounds;
+    }
+
+    /**
+     * @return amount of swaps of temperatures tried in the last run
+     */
+    public int getSwapsTried () {
+        return swapsTried;
+    }
+
+    /**
+     * @return amount of swaps of temperatures made in the last run
+     */
+    public int getSwapsMade () {
+        return swapsMade;
+    }
+}
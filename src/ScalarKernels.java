@@ -0,0 +1,38 @@
+package Main;
+
+/**
+ * The distance loop over one city at a time, for JVMs without the Vector API.
+ */
+class ScalarKernels implements DistanceKernels {
+
+    @Override
+    public void row (double[] xs, double[] ys, int from, int count,
+            double[] into, int offset)
+    {
+        double x = xs[from];
+        double y = ys[from];
+        for (int c = 0; c < count; c++) {
+            double dx = x - xs[c];
+            double dy = y - ys[c];
+            into[offset + c] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    @Override
+    public void row (double[] xs, double[] ys, int from, int count,
+            float[] into, int offset)
+    {
+        double x = xs[from];
+        double y = ys[from];
+        for (int c = 0; c < count; c++) {
+            double dx = x - xs[c];
+            double dy = y - ys[c];
+            into[offset + c] = (float) Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    @Override
+    public String toString () {
+        return "scalar";
+    }
+}
@@ -0,0 +1,243 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Counters of a branch-and-bound search, attached with
+ * {@link BranchNBoundTSP#setMetrics} and readable from any thread while the
+ * search runs. Workers count into plain fields of their own and publish them
+ * here every {@link #PUBLISH_INTERVAL} expanded nodes, so the counters lag
+ * behind by at most that many nodes per worker until the run ends, and a
+ * search without metrics attached only pays for the increments of its own
+ * fields. Every running search with metrics attached is also recorded as a
+ * {@link SearchProgressEvent} once a second while a flight recording is on.
+ */
+public class SearchMetrics {
+
+    //amount of nodes a worker expands between publishing its counters
+    static final int PUBLISH_INTERVAL = 1 << 10;
+
+    //metrics of every run in progress, for the flight recorder to sample
+    private static final Set<SearchMetrics> RUNNING =
+            ConcurrentHashMap.newKeySet();
+
+    static {
+        FlightRecorder.addPeriodicEvent(SearchProgressEvent.class, () -> {
+            for (SearchMetrics metrics : RUNNING) metrics.record();
+        });
+    }
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expanded = new LongAdder();
+    private final LongAdder pruned = new LongAdder();
+    private final LongAdder enqueued = new LongAdder();
+
+    //nodes on the queues of all workers as last published, and the most
+    //there have been
+    private final LongAdder frontier = new LongAdder();
+    private final AtomicLong frontierPeak = new AtomicLong();
+
+    //every improvement of the best tour of the current or last run
+    private final List<Improvement> timeline = new ArrayList<>();
+
+    //System.nanoTime() when the current or last run started and ended, the
+    //end is 0 while running
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * Reset every counter for a new run.
+     */
+    void start () {
+        created.reset();
+        expanded.reset();
+        pruned.reset();
+        enqueued.reset();
+        frontier.reset();
+        frontierPeak.set(0);
+        synchronized (timeline) {
+            timeline.clear();
+        }
+        endNanos = 0;
+        startNanos = System.nanoTime();
+        RUNNING.add(this);
+    }
+
+    void finish () {
+        endNanos = System.nanoTime();
+        RUNNING.remove(this);
+    }
+
+    /**
+     * Add the counts of one worker since it last published them.
+     *
+     * @param queued amount of nodes on the worker's queue now
+     * @param queueChange change of that amount since the last publication
+     * @param queuePeak most nodes on the worker's queue since then
+     */
+    void publish (long createdNodes, long expandedNodes, long prunedNodes,
+            long enqueuedNodes, int queued, int queueChange, int queuePeak)
+    {
+        created.add(createdNodes);
+        expanded.add(expandedNodes);
+        pruned.add(prunedNodes);
+        enqueued.add(enqueuedNodes);
+        frontier.add(queueChange);
+
+        //the other workers' queues as last published plus the peak of this one
+        long peak = frontier.sum() - queued + queuePeak;
+        frontierPeak.accumulateAndGet(peak, Math::max);
+    }
+
+    /**
+     * Add a new best tour to the timeline.
+     */
+    void improved (double cost) {
+        Improvement improvement = new Improvement(elapsed(), cost,
+                expanded.sum());
+        synchronized (timeline) {
+            timeline.add(improvement);
+        }
+    }
+
+    /**
+     * @return amount of nodes expanded as published by the workers so far
+     */
+    long expandedNodes () {
+        return expanded.sum();
+    }
+
+    private void record () {
+        Snapshot snapshot = snapshot();
+        SearchProgressEvent event = new SearchProgressEvent();
+        event.created = snapshot.created;
+        event.expanded = snapshot.expanded;
+        event.pruned = snapshot.pruned;
+        event.enqueued = snapshot.enqueued;
+        event.frontier = snapshot.frontier;
+        event.frontierPeak = snapshot.frontierPeak;
+        event.bestCost = snapshot.bestCost;
+        event.commit();
+    }
+
+    /**
+     * @return seconds since the current run started, or that the last one
+     * took
+     */
+    private double elapsed () {
+        long end = endNanos;
+        if (startNanos == 0) return 0;
+        return ((end == 0 ? System.nanoTime() : end) - startNanos) / 1e9;
+    }
+
+    /**
+     * @return the counters as they are now
+     */
+    public Snapshot snapshot () {
+        double bestCost = Double.POSITIVE_INFINITY;
+        int improvements;
+        synchronized (timeline) {
+            improvements = timeline.size();
+            if (improvements > 0) bestCost = timeline.get(improvements - 1).cost;
+        }
+        return new Snapshot(elapsed(), endNanos == 0 && startNanos != 0,
+                created.sum(), expanded.sum(), pruned.sum(), enqueued.sum(),
+                frontier.sum(), frontierPeak.get(), bestCost, improvements);
+    }
+
+    /**
+     * @return every improvement of the best tour so far, oldest first
+     */
+    public List<Improvement> getTimeline () {
+        synchronized (timeline) {
+            return Collections.unmodifiableList(new ArrayList<>(timeline));
+        }
+    }
+
+    /**
+     * A tour better than every one found before it.
+     */
+    public static class Improvement {
+
+        //seconds into the run it was found at
+        public final double seconds;
+
+        public final double cost;
+
+        //amount of nodes expanded by then, as published by the workers
+        public final long expanded;
+
+        private Improvement (double seconds, double cost, long expanded) {
+            this.seconds = seconds;
+            this.cost = cost;
+            this.expanded = expanded;
+        }
+
+        @Override
+        public String toString () {
+            return String.format("%.3f s: %.2f after %d nodes", seconds, cost,
+                    expanded);
+        }
+    }
+
+    /**
+     * The counters at one moment.
+     */
+    public static class Snapshot {
+
+        //seconds since the run started
+        public final double seconds;
+
+        public final boolean running;
+
+        //amount of nodes created, expanded, discarded because their lower
+        //bound could not beat the best tour, and put on a queue
+        public final long created;
+        public final long expanded;
+        public final long pruned;
+        public final long enqueued;
+
+        //amount of nodes waiting on the queues, and the most there have been
+        public final long frontier;
+        public final long frontierPeak;
+
+        //cost of the best tour, infinite if none was found yet
+        public final double bestCost;
+
+        //amount of times the best tour was improved
+        public final int improvements;
+
+        private Snapshot (double seconds, boolean running, long created,
+                long expanded, long pruned, long enqueued, long frontier,
+                long frontierPeak, double bestCost, int improvements)
+        {
+            this.seconds = seconds;
+            this.running = running;
+            this.created = created;
+            this.expanded = expanded;
+            this.pruned = pruned;
+            this.enqueued = enqueued;
+            this.frontier = frontier;
+            this.frontierPeak = frontierPeak;
+            this.bestCost = bestCost;
+            this.improvements = improvements;
+        }
+
+        @Override
+        public String toString () {
+            return String.format("%.1f s: %d nodes expanded (%d per second), "
+                    + "%d created, %d pruned, %d enqueued, %d queued (peak "
+                    + "%d), best cost %.2f after %d improvements", seconds,
+                    expanded, seconds > 0 ? Math.round(expanded / seconds) : 0,
+                    created, pruned, enqueued, frontier, frontierPeak, bestCost,
+                    improvements);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package Main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted every second for every branch-and-bound run
+ * with {@link SearchMetrics} attached, holding its counters at that moment so
+ * they can be lined up with garbage collections and CPU samples.
+ */
+@Name("Main.SearchProgress")
+@Label("Search Progress")
+@Category({"Travelling Salesman", "Branch and Bound"})
+@Description("Counters of a running branch-and-bound search")
+@Period("1 s")
+@StackTrace(false)
+class SearchProgressEvent extends jdk.jfr.Event {
+
+    @Label("Nodes Created")
+    long created;
+
+    @Label("Nodes Expanded")
+    long expanded;
+
+    @Label("Nodes Pruned")
+    @Description("Nodes discarded because their lower bound could not beat "
+            + "the best tour")
+    long pruned;
+
+    @Label("Nodes Enqueued")
+    long enqueued;
+
+    @Label("Frontier")
+    @Description("Nodes waiting on the queues of all workers")
+    long frontier;
+
+    @Label("Frontier Peak")
+    long frontierPeak;
+
+    @Label("Best Cost")
+    double bestCost;
+}
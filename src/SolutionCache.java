@@ -0,0 +1,305 @@
+package Main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Tours already found, and the distance matrices and neighbor lists they
+ * were found with, by the {@link InstanceKey} of their cities, so that
+ * solving the same cities again costs a hash and a lookup. Tours are keyed
+ * by the canonical hash and the solver parameters, except proven optimal
+ * ones which answer a request with any parameters. Everything is kept in
+ * memory up to a size in bytes, dropping the least recently used entries
+ * past it, and tours are also written to a directory, if one is given, from
+ * which a later run reads them back. Distance matrices and neighbor lists
+ * are only kept in memory, where rebuilding them is what they save. Shared
+ * by any amount of threads.
+ */
+public class SolutionCache {
+
+    //bytes kept in memory by default
+    public static final long DEFAULT_BYTES = 64L << 20;
+
+    //"TSPT" in the first four bytes of a tour file
+    private static final int MAGIC = 0x54505354;
+
+    //version of the tour file format
+    private static final int VERSION = 1;
+
+    //parameters an optimal tour is kept under
+    private static final String OPTIMAL = "optimal";
+
+    //bytes an entry takes on top of its arrays, roughly
+    private static final long ENTRY_BYTES = 128;
+
+    //most bytes kept in memory
+    private final long MAX_BYTES;
+
+    //directory tours are written to, or null
+    private final Path DIRECTORY;
+
+    //every entry from least to most recently used
+    private final LinkedHashMap<String, Object> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    //bytes taken by the entries in memory
+    private long bytes;
+
+    //lookups of tours answered from memory, from disk and not at all
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+
+    /**
+     * Keep everything only in memory.
+     *
+     * @param maxBytes most bytes to keep in memory
+     */
+    public SolutionCache (long maxBytes) {
+        MAX_BYTES = maxBytes;
+        DIRECTORY = null;
+    }
+
+    /**
+     * @param maxBytes most bytes to keep in memory
+     * @param directory directory to write tours to and read them back from,
+     * created if needed, or null to keep them only in memory
+     */
+    public SolutionCache (long maxBytes, Path directory) throws IOException {
+        MAX_BYTES = maxBytes;
+        DIRECTORY = directory;
+        if (directory != null) Files.createDirectories(directory);
+    }
+
+    /**
+     * A tour over the canonical order of some cities.
+     */
+    static class Entry {
+
+        final String method;
+        final double cost;
+        final boolean optimal;
+
+        //seconds it took to find
+        final double seconds;
+
+        final int[] tour;
+
+        Entry (String method, double cost, boolean optimal, double seconds,
+                int[] tour)
+        {
+            this.method = method;
+            this.cost = cost;
+            this.optimal = optimal;
+            this.seconds = seconds;
+            this.tour = tour;
+        }
+    }
+
+    /**
+     * @return a proven optimal tour of the cities, or else one found with the
+     * given parameters, or null
+     */
+    Entry get (InstanceKey key, String parameters) {
+        String optimal = tourKey(key, OPTIMAL);
+        String tour = tourKey(key, parameters);
+        synchronized (this) {
+            Object found = entries.get(optimal);
+            if (found == null) found = entries.get(tour);
+            if (found != null) {
+                memoryHits++;
+                return (Entry) found;
+            }
+        }
+        Entry read = read(optimal);
+        if (read == null) read = read(tour);
+        synchronized (this) {
+            if (read == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+            keep(read.optimal ? optimal : tour, read);
+        }
+        return read;
+    }
+
+    /**
+     * Keep a tour found with the given parameters, writing it to the
+     * directory if there is one.
+     */
+    void put (InstanceKey key, String parameters, Entry entry) {
+        String name = tourKey(key, entry.optimal ? OPTIMAL : parameters);
+        synchronized (this) {
+            keep(name, entry);
+        }
+        write(name, entry);
+    }
+
+    /**
+     * @return the distances of the cities, built by the supplier unless they
+     * are kept
+     */
+    DistanceProvider distances (InstanceKey key,
+            Supplier<DistanceProvider> build)
+    {
+        String name = "distances-" + key.getExact();
+        synchronized (this) {
+            Object found = entries.get(name);
+            if (found != null) return (DistanceProvider) found;
+        }
+        DistanceProvider built = build.get();
+        synchronized (this) {
+            keep(name, built);
+        }
+        return built;
+    }
+
+    /**
+     * @return neighbor lists of the given kind kept for the cities, or null
+     */
+    synchronized int[] neighbors (InstanceKey key, String kind) {
+        return (int[]) entries.get(kind + "-" + key.getExact());
+    }
+
+    /**
+     * Keep neighbor lists of the given kind for the cities.
+     */
+    void putNeighbors (InstanceKey key, String kind, int[] lists) {
+        synchronized (this) {
+            keep(kind + "-" + key.getExact(), lists);
+        }
+    }
+
+    /**
+     * @return name of a tour, which is also its file name
+     */
+    private static String tourKey (InstanceKey key, String parameters) {
+        StringBuilder name = new StringBuilder(key.getCanonical()).append('-');
+        for (int c = 0; c < parameters.length(); c++) {
+            char ch = parameters.charAt(c);
+            boolean safe = ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z'
+                    || ch >= '0' && ch <= '9' || ch == '.' || ch == '='
+                    || ch == '-';
+            name.append(safe ? ch : '_');
+        }
+        return name.toString();
+    }
+
+    /**
+     * Keep an entry in memory, dropping the least recently used ones past
+     * {@link #MAX_BYTES}. Entries larger than that are not kept at all.
+     */
+    private void keep (String name, Object value) {
+        long size = sizeOf(value);
+        if (size > MAX_BYTES) return;
+        Object replaced = entries.put(name, value);
+        if (replaced != null) bytes -= sizeOf(replaced);
+        bytes += size;
+        Iterator<Map.Entry<String, Object>> oldest =
+                entries.entrySet().iterator();
+        while (bytes > MAX_BYTES) {
+            bytes -= sizeOf(oldest.next().getValue());
+            oldest.remove();
+        }
+    }
+
+    /**
+     * @return bytes an entry takes, roughly
+     */
+    private static long sizeOf (Object value) {
+        if (value instanceof Entry) value = ((Entry) value).tour;
+        if (value instanceof int[]) {
+            return ENTRY_BYTES + (long) ((int[]) value).length * Integer.BYTES;
+        }
+        return ENTRY_BYTES + ((DistanceProvider) value).bytes();
+    }
+
+    /**
+     * @return the tour of the given name in the directory, or null if there
+     * is none or it can't be read
+     */
+    private Entry read (String name) {
+        if (DIRECTORY == null) return null;
+        try (InputStream file = Files.newInputStream(file(name));
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            String method = in.readUTF();
+            double cost = in.readDouble();
+            boolean optimal = in.readBoolean();
+            double seconds = in.readDouble();
+            int[] tour = new int[in.readInt()];
+            for (int c = 0; c < tour.length; c++) tour[c] = in.readInt();
+            return new Entry(method, cost, optimal, seconds, tour);
+        } catch (IOException x) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a tour to the directory, into a temporary file first which then
+     * replaces the tour file at once, so readers never see half of it.
+     */
+    private void write (String name, Entry entry) {
+        if (DIRECTORY == null) return;
+        Path target = file(name);
+        try {
+            Path temporary = Files.createTempFile(DIRECTORY, name, ".tmp");
+            try (OutputStream file = Files.newOutputStream(temporary);
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(entry.method);
+                out.writeDouble(entry.cost);
+                out.writeBoolean(entry.optimal);
+                out.writeDouble(entry.seconds);
+                out.writeInt(entry.tour.length);
+                for (int city : entry.tour) out.writeInt(city);
+            }
+            try {
+                Files.move(temporary, target,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException x) {
+                Files.move(temporary, target,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException x) {
+
+            //a tour which can't be written is only kept in memory
+        }
+    }
+
+    private Path file (String name) {
+        return DIRECTORY.resolve(name + ".tour");
+    }
+
+    /**
+     * @return share of tour lookups answered from memory or from disk
+     */
+    public synchronized double getHitRate () {
+        long lookups = memoryHits + diskHits + misses;
+        return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+    }
+
+    @Override
+    public synchronized String toString () {
+        return String.format("%d entries in %.1f MB, %d tour lookups answered "
+                + "from memory, %d from disk, %d missed", entries.size(),
+                bytes / 1048576.0, memoryHits, diskHits, misses);
+    }
+}
@@ -0,0 +1,369 @@
+package Main;
+
+import java.util.Locale;
+
+/**
+ * Solves one instance with any of the methods the program offers. Everything
+ * a solve needs is kept in the object, so any amount of them can solve
+ * different instances on different threads at once, unlike the static state
+ * {@link Main} keeps for its interactive procedure.
+ */
+public class Solver {
+
+    //most cities the automatic choice of method solves exactly
+    public static final int EXACT_CITIES = 12;
+
+    //most cities the automatic choice of method solves as a whole, more are
+    //split into parts
+    public static final int WHOLE_CITIES = 200000;
+
+    /**
+     * The methods of the interactive procedure, in the order of its menu.
+     */
+    public enum Method {
+        BRUTE_FORCE,
+        BRANCH_AND_BOUND,
+        NEAREST_NEIGHBOR,
+        PARALLEL_BRUTE_FORCE,
+        HELD_KARP,
+        LIN_KERNIGHAN,
+        DECOMPOSITION,
+        PARALLEL_TEMPERING;
+
+        /**
+         * @return the method of the given name, in any case and with dashes
+         * for underscores, such as "lin-kernighan"
+         */
+        public static Method parse (String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT)
+                    .replace('-', '_'));
+        }
+
+        /**
+         * @return whether the method always finds an optimal tour when given
+         * the time
+         */
+        public boolean isExact () {
+            return this != NEAREST_NEIGHBOR && this != LIN_KERNIGHAN
+                    && this != DECOMPOSITION && this != PARALLEL_TEMPERING;
+        }
+
+        @Override
+        public String toString () {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    //city coordinates
+    private final double[] XS;
+    private final double[] YS;
+
+    //distances between cities as given
+    private final DistanceProvider EXACT;
+
+    //whether the way to keep the given distances is still to be chosen
+    private final boolean CHOOSE;
+
+    //name of the way distances follow from the coordinates
+    private final String METRIC;
+
+    //distances between cities as they are kept, once needed
+    private DistanceProvider distances;
+
+    //tours, distances and neighbor lists already found, or null
+    private SolutionCache cache;
+
+    //content address of the cities, once needed
+    private InstanceKey key;
+
+    //seconds branch-and-bound may search, Lin-Kernighan may kick and
+    //parallel tempering may anneal for
+    private double timeLimit;
+
+    //amount of threads the parallel methods may use
+    private int threads = 1;
+
+    //whether heuristic tours are improved with 2-opt and Or-opt moves
+    private boolean improve;
+
+    /**
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param distances Euclidean distances between the cities
+     */
+    public Solver (double[] xs, double[] ys, DistanceProvider distances) {
+        this(xs, ys, distances, "EUCLIDEAN");
+    }
+
+    /**
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     * @param distances cost of travelling between any two of the cities
+     * @param metric name of the way the distances follow from the
+     * coordinates, which tells cached tours of the same coordinates apart,
+     * see {@link CityFile#getMetric}
+     */
+    public Solver (double[] xs, double[] ys, DistanceProvider distances,
+            String metric)
+    {
+        XS = xs;
+        YS = ys;
+        EXACT = distances;
+        CHOOSE = false;
+        METRIC = metric;
+    }
+
+    /**
+     * Solve the cities of a file, keeping their distances the way
+     * {@link DistanceProvider#choose} picks once they are needed.
+     */
+    public Solver (CityFile file) {
+        XS = file.getXs();
+        YS = file.getYs();
+        EXACT = file.getDistances();
+        CHOOSE = true;
+        METRIC = file.getMetric();
+    }
+
+    /**
+     * Set how long branch-and-bound may search before settling for its best
+     * tour, how long Lin-Kernighan keeps kicking its tour out of local
+     * optima, and how long parallel tempering anneals.
+     *
+     * @param seconds time limit, 0 by default for no limit and no kicks, and
+     * {@link ParallelTemperingTSP#DEFAULT_SECONDS} of annealing
+     */
+    public void setTimeLimit (double seconds) {
+        timeLimit = seconds;
+    }
+
+    /**
+     * Set how many threads branch-and-bound, parallel brute force, Held-Karp,
+     * decomposition and parallel tempering may use. Leave it at 1 when
+     * solving many instances at once.
+     *
+     * @param amount amount of threads, 1 by default
+     */
+    public void setThreads (int amount) {
+        threads = Math.max(1, amount);
+    }
+
+    /**
+     * Set whether tours of the heuristic methods are improved with 2-opt and
+     * Or-opt moves.
+     *
+     * @param improveTours whether to improve, false by default
+     */
+    public void setImprove (boolean improveTours) {
+        improve = improveTours;
+    }
+
+    /**
+     * Set where to look up tours before solving, and to keep the tours found
+     * along with the distances and neighbor lists they were found with.
+     *
+     * @param solutionCache cache shared with other solvers, or null for none,
+     * the default
+     */
+    public void setCache (SolutionCache solutionCache) {
+        cache = solutionCache;
+    }
+
+    /**
+     * @return amount of cities
+     */
+    public int size () {
+        return EXACT.size();
+    }
+
+    /**
+     * @return content address of the cities
+     */
+    public InstanceKey getKey () {
+        if (key == null) key = InstanceKey.of(XS, YS, METRIC);
+        return key;
+    }
+
+    /**
+     * @return distances between the cities as they are kept, chosen or taken
+     * from the cache the first time
+     */
+    private DistanceProvider distances () {
+        if (distances != null) return distances;
+        if (!CHOOSE) {
+            distances = EXACT;
+        } else if (cache != null) {
+            distances = cache.distances(getKey(),
+                    () -> DistanceProvider.choose(EXACT));
+        } else {
+            distances = DistanceProvider.choose(EXACT);
+        }
+        return distances;
+    }
+
+    /**
+     * @return branch-and-bound for at most {@link #EXACT_CITIES} cities,
+     * Lin-Kernighan for up to {@link #WHOLE_CITIES} and spatial
+     * decomposition for more
+     */
+    public Method automaticMethod () {
+        if (size() <= EXACT_CITIES) return Method.BRANCH_AND_BOUND;
+        return size() <= WHOLE_CITIES ? Method.LIN_KERNIGHAN
+                : Method.DECOMPOSITION;
+    }
+
+    /**
+     * Find a tour with the given method, or look up a tour found before with
+     * the same parameters, or a proven optimal one, if there is a cache.
+     */
+    public Result solve (Method method) {
+        long start = System.nanoTime();
+        String parameters = method + ";time=" + timeLimit + ";improve="
+                + improve;
+        if (cache != null) {
+            SolutionCache.Entry hit = cache.get(getKey(), parameters);
+            if (hit != null) {
+                return new Result(Method.parse(hit.method),
+                        getKey().fromCanonical(hit.tour), hit.cost,
+                        hit.optimal, (System.nanoTime() - start) / 1e9, true);
+            }
+        }
+        DistanceProvider distances = distances();
+        int[] tour;
+        boolean optimal = method.isExact();
+        switch (method) {
+            case BRUTE_FORCE: {
+                BruteForceTSP solver = new BruteForceTSP(distances);
+                solver.go();
+                tour = solver.getTour();
+                break;
+            }
+            case BRANCH_AND_BOUND: {
+                BranchNBoundTSP solver = new BranchNBoundTSP(distances);
+                solver.setThreads(threads);
+                solver.setTimeLimit(timeLimit);
+                solver.go();
+                tour = solver.getTour();
+                optimal = solver.isOptimal();
+                break;
+            }
+            case NEAREST_NEIGHBOR: {
+                NearestNeighborTSP solver = new NearestNeighborTSP(XS, YS,
+                        distances);
+                solver.go();
+                tour = solver.getTour();
+                break;
+            }
+            case PARALLEL_BRUTE_FORCE: {
+                ParallelBruteForceTSP solver = new ParallelBruteForceTSP(
+                        distances, threads);
+                solver.go();
+                tour = solver.getTour();
+                break;
+            }
+            case HELD_KARP: {
+                HeldKarpTSP solver = new HeldKarpTSP(distances, threads);
+                solver.go();
+                tour = solver.getTour();
+                break;
+            }
+            case DECOMPOSITION: {
+                DecompositionTSP solver = new DecompositionTSP(XS, YS);
+                solver.setThreads(threads);
+                solver.go();
+                tour = solver.getTour();
+                break;
+            }
+            case PARALLEL_TEMPERING: {
+                int[] neighbors = cache == null ? null
+                        : cache.neighbors(getKey(), "local-search");
+                ParallelTemperingTSP solver = new ParallelTemperingTSP(XS, YS,
+                        distances, neighbors);
+                solver.setThreads(threads);
+                if (timeLimit > 0) solver.setTimeLimit(timeLimit);
+                solver.go();
+                tour = solver.getTour();
+                break;
+            }
+            default: {
+                int[] candidates = cache == null ? null
+                        : cache.neighbors(getKey(), "lin-kernighan");
+                LinKernighanTSP solver = new LinKernighanTSP(XS, YS,
+                        LinKernighanTSP.DEFAULT_CANDIDATES, candidates);
+                if (cache != null && candidates == null) {
+                    cache.putNeighbors(getKey(), "lin-kernighan",
+                            solver.getCandidates());
+                }
+                solver.setTimeLimit(timeLimit);
+                solver.go();
+                tour = solver.getTour();
+            }
+        }
+        if (improve && !optimal && tour != null && size() > 4) {
+            int[] neighbors = cache == null ? null
+                    : cache.neighbors(getKey(), "local-search");
+            LocalSearch search = new LocalSearch(XS, YS,
+                    LocalSearch.DEFAULT_NEIGHBORS, neighbors);
+            if (cache != null && neighbors == null) {
+                cache.putNeighbors(getKey(), "local-search",
+                        search.getNeighbors());
+            }
+            tour = search.improve(tour);
+        }
+        double cost = cost(tour);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (cache != null && tour != null) {
+            cache.put(getKey(), parameters, new SolutionCache.Entry(
+                    method.toString(), cost, optimal, seconds,
+                    getKey().toCanonical(tour)));
+        }
+        return new Result(method, tour, cost, optimal, seconds, false);
+    }
+
+    /**
+     * @return cost of a full tour with the distances being solved for, which
+     * need not be the Euclidean ones the heuristics work with
+     */
+    private double cost (int[] tour) {
+        if (tour == null) return Double.POSITIVE_INFINITY;
+        double sum = 0;
+        for (int c = 1; c < tour.length; c++) {
+            sum += distances.distance(tour[c - 1], tour[c]);
+        }
+        return sum;
+    }
+
+    /**
+     * A tour found by one solve.
+     */
+    public static class Result {
+
+        public final Method method;
+
+        //full tour starting and ending at city 0, null if none was found
+        public final int[] tour;
+
+        public final double cost;
+
+        //whether the tour is proven optimal
+        public final boolean optimal;
+
+        //seconds the solve took
+        public final double seconds;
+
+        //whether the tour was looked up rather than found, method is then
+        //the one which found it
+        public final boolean cached;
+
+        private Result (Method method, int[] tour, double cost,
+                boolean optimal, double seconds, boolean cached)
+        {
+            this.method = method;
+            this.tour = tour;
+            this.cost = cost;
+            this.optimal = optimal;
+            this.seconds = seconds;
+            this.cached = cached;
+        }
+    }
+}
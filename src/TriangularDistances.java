@@ -0,0 +1,94 @@
+package Main;
+
+/**
+ * Symmetric distances stored once per pair of cities as floats, in a single
+ * flat array holding the lower triangle of the matrix row by row. That is an
+ * eighth of a full matrix of doubles, at the price of rounding every distance
+ * to about 7 significant digits.
+ */
+public class TriangularDistances implements DistanceProvider {
+
+    //largest amount of cities whose triangle fits into a single array
+    public static final int MAX_CITIES = 65_536;
+
+    //amount of cities
+    private final int N;
+
+    //distance between cities i > j at index i * (i - 1) / 2 + j
+    private final float[] TRIANGLE;
+
+    /**
+     * Compute and store every distance.
+     *
+     * @param exact symmetric distances between at most {@link #MAX_CITIES}
+     * cities
+     */
+    public TriangularDistances (DistanceProvider exact) {
+        N = exact.size();
+        if (N > MAX_CITIES) {
+            throw new IllegalArgumentException("A triangular matrix holds at "
+                    + "most " + MAX_CITIES + " cities");
+        }
+        TRIANGLE = new float[(int) entries(N)];
+        if (exact instanceof CoordinateDistances) {
+            CoordinateDistances coordinates = (CoordinateDistances) exact;
+            for (int i = 1; i < N; i++) coordinates.row(i, i, TRIANGLE, row(i));
+            return;
+        }
+        int index = 0;
+        for (int i = 1; i < N; i++) {
+            for (int j = 0; j < i; j++) {
+                TRIANGLE[index++] = (float) exact.distance(i, j);
+            }
+        }
+    }
+
+    /**
+     * @return bytes the triangle of the given amount of cities takes, or
+     * Long.MAX_VALUE if it can't be stored in a single array
+     */
+    public static long bytes (int cities) {
+        if (cities > MAX_CITIES) return Long.MAX_VALUE;
+        return entries(cities) * Float.BYTES;
+    }
+
+    private static long entries (int cities) {
+        return (long) cities * (cities - 1) / 2;
+    }
+
+    @Override
+    public int size () {
+        return N;
+    }
+
+    @Override
+    public double distance (int from, int to) {
+        if (from > to) return TRIANGLE[row(from) + to];
+        if (from < to) return TRIANGLE[row(to) + from];
+        return 0;
+    }
+
+    /**
+     * @return index of the first entry of a row of the triangle
+     */
+    private static int row (int i) {
+        return (int) ((long) i * (i - 1) >>> 1);
+    }
+
+    @Override
+    public long bytes () {
+        return bytes(N);
+    }
+
+    @Override
+    public boolean isSymmetric () {
+        return true;
+    }
+
+    @Override
+    public String toString () {
+        long bytes = bytes(N);
+        return "triangular float matrix of " + (bytes < 1 << 20 
+                ? bytes + " bytes" : (bytes >> 20) + " MB");
+    }
+}
@@ -0,0 +1,112 @@
+package Main;
+
+import java.util.Arrays;
+
+/**
+ * Distances between cities as TSPLIB defines them for its edge weight types,
+ * so that tour costs can be compared with the published optima.
+ * <ul>
+ * <li>EUC_2D, Euclidean distance rounded to the nearest integer</li>
+ * <li>CEIL_2D, Euclidean distance rounded up</li>
+ * <li>ATT, the pseudo-Euclidean distance of the att instances</li>
+ * <li>GEO, distance on the earth with coordinates given in degrees and
+ * minutes as DDD.MM, rounded down</li>
+ * </ul>
+ */
+public class TsplibDistances implements DistanceProvider {
+
+    //constants TSPLIB defines the GEO distance with
+    private static final double PI = 3.141592;
+    private static final double EARTH_RADIUS = 6378.388;
+
+    //edge weight types, by their position in this list
+    private static final String[] TYPES = {"EUC_2D", "CEIL_2D", "ATT", "GEO"};
+    private static final int EUC_2D = 0;
+    private static final int CEIL_2D = 1;
+    private static final int ATT = 2;
+
+    //edge weight type as a position in TYPES
+    private final int TYPE;
+
+    //city coordinates, in radians of latitude and longitude for GEO
+    private final double[] X;
+    private final double[] Y;
+
+    /**
+     * @param type edge weight type, one of those {@link #supports} accepts
+     * @param xs x coordinate of every city
+     * @param ys y coordinate of every city
+     */
+    public TsplibDistances (String type, double[] xs, double[] ys) {
+        if (!supports(type)) {
+            throw new IllegalArgumentException("Unsupported TSPLIB edge "
+                    + "weight type " + type);
+        }
+        TYPE = Arrays.asList(TYPES).indexOf(type);
+        if (type.equals("GEO")) {
+            X = new double[xs.length];
+            Y = new double[ys.length];
+            for (int c = 0; c < xs.length; c++) {
+                X[c] = radians(xs[c]);
+                Y[c] = radians(ys[c]);
+            }
+        } else {
+            X = xs;
+            Y = ys;
+        }
+    }
+
+    /**
+     * @return whether the given edge weight type is supported
+     */
+    public static boolean supports (String type) {
+        return Arrays.asList(TYPES).contains(type);
+    }
+
+    @Override
+    public int size () {
+        return X.length;
+    }
+
+    @Override
+    public double distance (int from, int to) {
+        if (from == to) return 0;
+        double dx = X[from] - X[to];
+        double dy = Y[from] - Y[to];
+        switch (TYPE) {
+            case EUC_2D:
+                return (int) (Math.sqrt(dx * dx + dy * dy) + 0.5);
+            case CEIL_2D:
+                return Math.ceil(Math.sqrt(dx * dx + dy * dy));
+            case ATT:
+                double r = Math.sqrt((dx * dx + dy * dy) / 10);
+                double t = (int) (r + 0.5);
+                return t < r ? t + 1 : t;
+            default:
+                double q1 = Math.cos(Y[from] - Y[to]);
+                double q2 = Math.cos(X[from] - X[to]);
+                double q3 = Math.cos(X[from] + X[to]);
+                return (int) (EARTH_RADIUS * Math.acos(0.5 * ((1 + q1) * q2
+                        - (1 - q1) * q3)) + 1);
+        }
+    }
+
+    /**
+     * @return a coordinate given as DDD.MM in radians
+     */
+    private static double radians (double coordinate) {
+        int degrees = (int) coordinate;
+        double minutes = coordinate - degrees;
+        return PI * (degrees + 5 * minutes / 3) / 180;
+    }
+
+    @Override
+    public boolean isSymmetric () {
+        return true;
+    }
+
+    @Override
+    public String toString () {
+        return "TSPLIB " + TYPES[TYPE] + " distances";
+    }
+}
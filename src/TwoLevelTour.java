@@ -0,0 +1,391 @@
+package Main;
+
+/**
+ * A tour stored as a two-level doubly-linked list, so that reversing a part of
+ * it takes O(sqrt N) instead of O(N). The cities are split into about sqrt N
+ * segments, each a run of consecutive cities of the tour. Cities are linked
+ * and numbered in increasing order within their segment, and each segment has
+ * a reversed bit telling whether the tour runs through it in that order or
+ * backwards. The segments themselves form a doubly-linked ring numbered in
+ * tour order. Reversing a run of whole segments only flips their bits and
+ * relinks the ring, and a segment is split by moving its smaller part into
+ * the neighboring segment.
+ */
+public class TwoLevelTour {
+
+    //amount of cities
+    private final int N;
+
+    //per city: segment it belongs to, its number within the segment, and
+    //the cities before and after it in the segment's own order or -1 at the
+    //ends of the segment
+    private final int[] segment;
+    private final int[] id;
+    private final int[] succ;
+    private final int[] pred;
+
+    //amount of segments
+    private final int SEGMENTS;
+
+    //per segment: whether the tour runs through it in decreasing number
+    //order, the cities with the lowest and highest numbers, its amount of
+    //cities, its number in the ring and the segments before and after it on
+    //the tour
+    private final boolean[] reversed;
+    private final int[] first;
+    private final int[] last;
+    private final int[] size;
+    private final int[] rank;
+    private final int[] segNext;
+    private final int[] segPrev;
+
+    //scratch space for reversing runs of segments or part of a segment
+    private final int[] scratch;
+    private final int[] ranks;
+
+    /**
+     * Create a tour visiting the cities in the given order.
+     *
+     * @param order every city exactly once, in tour order
+     */
+    public TwoLevelTour (int[] order) {
+        N = order.length;
+        segment = new int[N];
+        id = new int[N];
+        succ = new int[N];
+        pred = new int[N];
+        int groupSize = Math.max(8, (int) Math.sqrt(N));
+        SEGMENTS = (N + groupSize - 1) / groupSize;
+        reversed = new boolean[SEGMENTS];
+        first = new int[SEGMENTS];
+        last = new int[SEGMENTS];
+        size = new int[SEGMENTS];
+        rank = new int[SEGMENTS];
+        segNext = new int[SEGMENTS];
+        segPrev = new int[SEGMENTS];
+        scratch = new int[N];
+        ranks = new int[SEGMENTS];
+        for (int s = 0; s < SEGMENTS; s++) {
+            int from = s * groupSize;
+            int to = Math.min(N, from + groupSize);
+            first[s] = order[from];
+            last[s] = order[to - 1];
+            size[s] = to - from;
+            rank[s] = s;
+            segNext[s] = (s + 1) % SEGMENTS;
+            segPrev[s] = (s + SEGMENTS - 1) % SEGMENTS;
+            for (int c = from; c < to; c++) {
+                int city = order[c];
+                segment[city] = s;
+                id[city] = c;
+                pred[city] = c == from ? -1 : order[c - 1];
+                succ[city] = c == to - 1 ? -1 : order[c + 1];
+            }
+        }
+    }
+
+    /**
+     * @return the city after the given one on the tour
+     */
+    public int next (int city) {
+        int s = segment[city];
+        int n = reversed[s] ? pred[city] : succ[city];
+        return n >= 0 ? n : head(segNext[s]);
+    }
+
+    /**
+     * @return the city before the given one on the tour
+     */
+    public int previous (int city) {
+        int s = segment[city];
+        int p = reversed[s] ? succ[city] : pred[city];
+        return p >= 0 ? p : tail(segPrev[s]);
+    }
+
+    /**
+     * @return true if travelling forward from a, b is reached no later than
+     * c is
+     */
+    public boolean between (int a, int b, int c) {
+        long ka = key(a);
+        long kb = key(b);
+        long kc = key(c);
+        if (ka <= kc) return ka <= kb && kb <= kc;
+        return ka <= kb || kb <= kc;
+    }
+
+    /**
+     * Replace edges (a, b) and (c, d) with edges (a, c) and (b, d), where b
+     * and d either both follow or both precede a and c on the tour.
+     */
+    public void move (int a, int b, int c, int d) {
+        if (b == next(a)) flip(a, b, c, d);
+        else flip(b, a, d, c);
+    }
+
+    /**
+     * Write the tour into an array, beginning at a given city.
+     *
+     * @param start city to begin at
+     * @param into array with room for every city
+     */
+    public void toArray (int start, int[] into) {
+        int city = start;
+        for (int c = 0; c < N; c++) {
+            into[c] = city;
+            city = next(city);
+        }
+    }
+
+    /**
+     * Replace edges (a, b) and (c, d), where b follows a and d follows c,
+     * with edges (a, c) and (b, d) by reversing the path from b to c or the
+     * path from d to a, whichever spans fewer segments.
+     */
+    private void flip (int a, int b, int c, int d) {
+        int inner = spanned(b, c);
+        int outer = spanned(d, a);
+        if (inner <= outer) reversePath(b, c);
+        else reversePath(d, a);
+    }
+
+    /**
+     * @return amount of segment boundaries crossed travelling forward from
+     * x to y
+     */
+    private int spanned (int x, int y) {
+        int span = rank[segment[y]] - rank[segment[x]];
+        if (span < 0 || span == 0 && offset(y) < offset(x)) span += SEGMENTS;
+        return span;
+    }
+
+    /**
+     * Reverse the path travelling forward from x to y.
+     */
+    private void reversePath (int x, int y) {
+        int s = segment[x];
+        if (s == segment[y] && offset(x) <= offset(y)) {
+            reverseWithin(s, x, y);
+            return;
+        }
+        split(x, -1);
+
+        //splitting may have moved x into the segment of y
+        s = segment[x];
+        if (s == segment[y] && offset(x) <= offset(y)) {
+            reverseWithin(s, x, y);
+            return;
+        }
+        split(next(y), s);
+        reverseSegments(s, segment[y]);
+    }
+
+    /**
+     * Reverse the part of a segment travelling forward from x to y.
+     */
+    private void reverseWithin (int s, int x, int y) {
+        int low = reversed[s] ? y : x;
+        int high = reversed[s] ? x : y;
+        int count = 0;
+        for (int city = low; ; city = succ[city]) {
+            scratch[count++] = city;
+            if (city == high) break;
+        }
+        int before = pred[low];
+        int after = succ[high];
+        int number = id[low];
+        int city;
+        int previousCity = before;
+        for (int c = count - 1; c >= 0; c--) {
+            city = scratch[c];
+            id[city] = number++;
+            pred[city] = previousCity;
+            if (previousCity >= 0) succ[previousCity] = city;
+            previousCity = city;
+        }
+        succ[previousCity] = after;
+        if (after >= 0) pred[after] = previousCity;
+        if (before < 0) first[s] = scratch[count - 1];
+        if (after < 0) last[s] = scratch[0];
+    }
+
+    /**
+     * Make a city the first one of its segment on the tour by moving the
+     * smaller part of the segment into the neighboring segment.
+     *
+     * @param city city to become first
+     * @param keep segment whose first city must stay first, or -1
+     */
+    private void split (int city, int keep) {
+        int s = segment[city];
+        if (head(s) == city) return;
+        int before = 0;
+        for (int c = head(s); c != city; c = forward(c)) before++;
+        int nextSegment = segNext[s];
+        if (before <= size[s] - before || nextSegment == keep) {
+
+            //move the cities before it to the end of the previous segment
+            int t = segPrev[s];
+            int c = head(s);
+            int n;
+            while (c != city) {
+                n = forward(c);
+                append(t, c);
+                c = n;
+            }
+            size[s] -= before;
+            size[t] += before;
+            if (reversed[s]) {
+                succ[city] = -1;
+                last[s] = city;
+            } else {
+                pred[city] = -1;
+                first[s] = city;
+            }
+        } else {
+
+            //move the city and the cities after it to the start of the next
+            //segment
+            int newTail = backward(city);
+            int c = tail(s);
+            int p;
+            int moved = size[s] - before;
+            while (true) {
+                p = backward(c);
+                prepend(nextSegment, c);
+                if (c == city) break;
+                c = p;
+            }
+            size[s] -= moved;
+            size[nextSegment] += moved;
+            if (reversed[s]) {
+                pred[newTail] = -1;
+                first[s] = newTail;
+            } else {
+                succ[newTail] = -1;
+                last[s] = newTail;
+            }
+        }
+    }
+
+    /**
+     * Add a city at the end of a segment on the tour.
+     */
+    private void append (int t, int city) {
+        segment[city] = t;
+        if (reversed[t]) {
+            int end = first[t];
+            id[city] = id[end] - 1;
+            pred[end] = city;
+            succ[city] = end;
+            pred[city] = -1;
+            first[t] = city;
+        } else {
+            int end = last[t];
+            id[city] = id[end] + 1;
+            succ[end] = city;
+            pred[city] = end;
+            succ[city] = -1;
+            last[t] = city;
+        }
+    }
+
+    /**
+     * Add a city at the start of a segment on the tour.
+     */
+    private void prepend (int t, int city) {
+        segment[city] = t;
+        if (reversed[t]) {
+            int end = last[t];
+            id[city] = id[end] + 1;
+            succ[end] = city;
+            pred[city] = end;
+            succ[city] = -1;
+            last[t] = city;
+        } else {
+            int end = first[t];
+            id[city] = id[end] - 1;
+            pred[end] = city;
+            succ[city] = end;
+            pred[city] = -1;
+            first[t] = city;
+        }
+    }
+
+    /**
+     * Reverse the run of whole segments travelling forward from segment
+     * 'from' to segment 'to'.
+     */
+    private void reverseSegments (int from, int to) {
+        int count = 0;
+        for (int s = from; ; s = segNext[s]) {
+            scratch[count++] = s;
+            if (s == to) break;
+        }
+        int before = segPrev[from];
+        int after = segNext[to];
+        int s;
+        for (int c = 0; c < count; c++) {
+            s = scratch[c];
+            reversed[s] = !reversed[s];
+        }
+
+        //the run keeps the same ring numbers, handed out in reverse
+        for (int c = 0; c < count; c++) ranks[c] = rank[scratch[c]];
+        for (int c = 0; c < count; c++) rank[scratch[count - 1 - c]] = ranks[c];
+        if (count == SEGMENTS) {
+            for (int c = 0; c < count; c++) {
+                s = scratch[c];
+                segNext[s] = scratch[(c + count - 1) % count];
+                segPrev[s] = scratch[(c + 1) % count];
+            }
+            return;
+        }
+        for (int c = 0; c < count; c++) {
+            s = scratch[c];
+            segNext[s] = c == 0 ? after : scratch[c - 1];
+            segPrev[s] = c == count - 1 ? before : scratch[c + 1];
+        }
+        segNext[before] = to;
+        segPrev[after] = from;
+    }
+
+    /**
+     * @return the city after the given one within its segment, or -1
+     */
+    private int forward (int city) {
+        return reversed[segment[city]] ? pred[city] : succ[city];
+    }
+
+    /**
+     * @return the city before the given one within its segment, or -1
+     */
+    private int backward (int city) {
+        return reversed[segment[city]] ? succ[city] : pred[city];
+    }
+
+    private int head (int s) {
+        return reversed[s] ? last[s] : first[s];
+    }
+
+    private int tail (int s) {
+        return reversed[s] ? first[s] : last[s];
+    }
+
+    /**
+     * @return position of a city within its segment, increasing along the
+     * tour
+     */
+    private int offset (int city) {
+        return reversed[segment[city]] ? -id[city] : id[city];
+    }
+
+    /**
+     * @return a number increasing along the tour from the start of the
+     * segment numbered 0
+     */
+    private long key (int city) {
+        return ((long) rank[segment[city]] << 32)
+                + ((long) offset(city) - Integer.MIN_VALUE);
+    }
+}
@@ -0,0 +1,80 @@
+package Main;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The distance loop over as many cities at a time as fit into the widest SIMD
+ * register of the processor, 4 doubles with AVX2 and 8 with AVX-512, with
+ * the cities left over at the end handled one at a time. Every lane does the
+ * same arithmetic as {@link ScalarKernels} in the same order, so results are
+ * identical. Needs {@code --add-modules jdk.incubator.vector} both to
+ * compile and to run.
+ */
+class VectorKernels implements DistanceKernels {
+
+    private static final VectorSpecies<Double> DOUBLES =
+            DoubleVector.SPECIES_PREFERRED;
+
+    //floats with as many lanes as there are doubles
+    private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(
+            float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    //amount of doubles handled at once
+    static final int LANES = DOUBLES.length();
+
+    @Override
+    public void row (double[] xs, double[] ys, int from, int count,
+            double[] into, int offset)
+    {
+        double x = xs[from];
+        double y = ys[from];
+        int c = 0;
+        for (int end = DOUBLES.loopBound(count); c < end; c += LANES) {
+            distances(x, y, xs, ys, c).intoArray(into, offset + c);
+        }
+        for (; c < count; c++) {
+            double dx = x - xs[c];
+            double dy = y - ys[c];
+            into[offset + c] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    @Override
+    public void row (double[] xs, double[] ys, int from, int count,
+            float[] into, int offset)
+    {
+        double x = xs[from];
+        double y = ys[from];
+        int c = 0;
+        for (int end = DOUBLES.loopBound(count); c < end; c += LANES) {
+            ((FloatVector) distances(x, y, xs, ys, c).castShape(FLOATS, 0))
+                    .intoArray(into, offset + c);
+        }
+        for (; c < count; c++) {
+            double dx = x - xs[c];
+            double dy = y - ys[c];
+            into[offset + c] = (float) Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    /**
+     * @return distances from a location to the cities from c on
+     */
+    private static DoubleVector distances (double x, double y, double[] xs,
+            double[] ys, int c)
+    {
+        DoubleVector dx = DoubleVector.broadcast(DOUBLES, x)
+                .sub(DoubleVector.fromArray(DOUBLES, xs, c));
+        DoubleVector dy = DoubleVector.broadcast(DOUBLES, y)
+                .sub(DoubleVector.fromArray(DOUBLES, ys, c));
+        return dx.mul(dx).add(dy.mul(dy)).sqrt();
+    }
+
+    @Override
+    public String toString () {
+        return "vector of " + LANES + " doubles";
+    }
+}
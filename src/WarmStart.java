@@ -0,0 +1,174 @@
+package Main;
+
+/**
+ * Starting tours for the exact solvers, which prune against the cost of the
+ * best tour they know and so prune nothing until they reach their first full
+ * tour. A nearest neighbor tour from city 0 is improved with 2-opt moves and
+ * Or-opt moves of up to {@link #MAX_SEGMENT} cities over every pair of
+ * positions until none of them shortens it, O(N^2) per pass, which is
+ * nothing next to an exact search over the few dozen cities those handle.
+ * With distances which differ by direction only Or-opt moves which keep
+ * the segment's direction are tried, since reversing a part of the tour
+ * changes its cost.
+ */
+final class WarmStart {
+
+    //longest segment Or-opt moves
+    private static final int MAX_SEGMENT = 3;
+
+    //smallest gain a move needs, anything less is rounding error
+    private static final double EPSILON = 1e-9;
+
+    private WarmStart () {
+    }
+
+    /**
+     * @param symmetric whether the distances are the same both ways, see
+     * {@link DistanceProvider#isSymmetric}
+     *
+     * @return a tour beginning and ending at city 0 like the solvers return
+     */
+    static int[] tour (DistanceProvider distances, boolean symmetric) {
+        int n = distances.size();
+        if (n == 0) return new int[1];
+        int[] order = nearestNeighbor(distances);
+        boolean improved = n > 3;
+        while (improved) {
+            improved = orOpt(distances, order, symmetric);
+            if (symmetric) improved |= twoOpt(distances, order);
+        }
+        int start = 0;
+        while (order[start] != 0) start++;
+        int[] path = new int[n + 1];
+        for (int c = 0; c < n; c++) path[c] = order[(start + c) % n];
+        return path;
+    }
+
+    /**
+     * @return cost of a tour beginning and ending at the same city
+     */
+    static double cost (DistanceProvider distances, int[] path) {
+        double sum = 0;
+        for (int c = 1; c < path.length; c++) {
+            sum += distances.distance(path[c - 1], path[c]);
+        }
+        return sum;
+    }
+
+    private static int[] nearestNeighbor (DistanceProvider distances) {
+        int n = distances.size();
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int c = 1; c < n; c++) {
+            int from = order[c - 1];
+            int nearest = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int to = 0; to < n; to++) {
+                if (!visited[to] && distances.distance(from, to) < best) {
+                    best = distances.distance(from, to);
+                    nearest = to;
+                }
+            }
+            visited[nearest] = true;
+            order[c] = nearest;
+        }
+        return order;
+    }
+
+    /**
+     * Apply every improving 2-opt move found in one pass over all pairs of
+     * tour edges.
+     *
+     * @return true if the tour was improved
+     */
+    private static boolean twoOpt (DistanceProvider distances, int[] order) {
+        int n = order.length;
+        boolean improved = false;
+        for (int i = 0; i < n - 2; i++) {
+            for (int j = i + 2; j < n; j++) {
+                if (i == 0 && j == n - 1) continue;
+                int a = order[i];
+                int b = order[i + 1];
+                int c = order[j];
+                int d = order[(j + 1) % n];
+                double gain = distances.distance(a, b)
+                        + distances.distance(c, d)
+                        - distances.distance(a, c)
+                        - distances.distance(b, d);
+                if (gain > EPSILON) {
+                    for (int lo = i + 1, hi = j; lo < hi; lo++, hi--) {
+                        int swap = order[lo];
+                        order[lo] = order[hi];
+                        order[hi] = swap;
+                    }
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Apply every improving Or-opt move found in one pass over all segments
+     * and all the edges they could be moved into.
+     *
+     * @param reverse whether a segment may be put back the other way round
+     *
+     * @return true if the tour was improved
+     */
+    private static boolean orOpt (DistanceProvider distances, int[] order,
+            boolean reverse)
+    {
+        int n = order.length;
+        boolean improved = false;
+        for (int length = 1; length <= MAX_SEGMENT && length + 2 <= n;
+                length++) {
+            for (int i = 0; i < n; i++) {
+                int first = order[i];
+                int last = order[(i + length - 1) % n];
+                int before = order[(i + n - 1) % n];
+                int after = order[(i + length) % n];
+                double removed = distances.distance(before, first)
+                        + distances.distance(last, after)
+                        - distances.distance(before, after);
+
+                //every edge outside the segment and the two edges around it
+                for (int k = i + length; k < i + n - 1; k++) {
+                    int x = order[k % n];
+                    int y = order[(k + 1) % n];
+                    double kept = distances.distance(x, y);
+                    double forward = distances.distance(x, first)
+                            + distances.distance(last, y) - kept;
+                    double backward = reverse ? distances.distance(x, last)
+                            + distances.distance(first, y) - kept
+                            : Double.POSITIVE_INFINITY;
+                    if (removed - Math.min(forward, backward) > EPSILON) {
+                        move(order, i, length, k, backward < forward);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Move the segment of the given length starting at position i to after
+     * position k, which lies outside of it.
+     */
+    private static void move (int[] order, int i, int length, int k,
+            boolean reversed)
+    {
+        int n = order.length;
+        int[] moved = new int[n];
+        int m = 0;
+        for (int p = i + length; p <= k; p++) moved[m++] = order[p % n];
+        for (int s = 0; s < length; s++) {
+            moved[m++] = order[(i + (reversed ? length - 1 - s : s)) % n];
+        }
+        for (int p = k + 1; p < i + n; p++) moved[m++] = order[p % n];
+        System.arraycopy(moved, 0, order, 0, n);
+    }
+}
@@ -0,0 +1,73 @@
+package Main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs {@link BranchNBoundTSP} with every lower bound against
+ * {@link HeldKarpTSP} on seeded instances whose distances differ by
+ * direction, which the 1-tree bounds have to stay below too.
+ */
+class BranchNBoundTSPTest {
+
+    //seeds of the instances
+    private static final long[] SEEDS = {1, 2, 3, 4, 5};
+
+    @Test
+    void cheapestExitBoundFindsTheAsymmetricOptimum () {
+        assertOptimal(CheapestExitBound::new);
+    }
+
+    @Test
+    void oneTreeBoundFindsTheAsymmetricOptimum () {
+        assertOptimal(OneTreeBound::new);
+    }
+
+    @Test
+    void heldKarpBoundFindsTheAsymmetricOptimum () {
+        assertOptimal(HeldKarpBound::new);
+    }
+
+    private static void assertOptimal (Supplier<LowerBound> bound) {
+        for (int cities = 4; cities <= 11; cities++) {
+            for (long seed : SEEDS) {
+                double[][] matrix = asymmetric(cities, seed);
+                HeldKarpTSP exact = new HeldKarpTSP(matrix);
+                exact.go();
+                for (int threads = 1; threads <= 2; threads++) {
+                    for (boolean shortcuts : new boolean[] {false, true}) {
+                        BranchNBoundTSP solver = new BranchNBoundTSP(matrix);
+                        solver.setLowerBound(bound.get());
+                        solver.setThreads(threads);
+                        solver.setWarmStart(shortcuts);
+                        solver.setSymmetryBreaking(shortcuts);
+                        solver.go();
+                        String instance = cities + " cities, seed " + seed
+                                + ", " + threads + " threads";
+                        assertEquals(exact.getCost(), solver.getCost(), 1e-9,
+                                instance);
+                        assertTrue(solver.isOptimal(), instance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return random whole distances which differ by direction
+     */
+    private static double[][] asymmetric (int cities, long seed) {
+        Random random = new Random(seed);
+        double[][] matrix = new double[cities][cities];
+        for (int from = 0; from < cities; from++) {
+            for (int to = 0; to < cities; to++) {
+                if (from != to) matrix[from][to] = 1 + random.nextInt(20);
+            }
+        }
+        return matrix;
+    }
+}
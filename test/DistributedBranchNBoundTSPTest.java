@@ -0,0 +1,95 @@
+package Main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs {@link DistributedBranchNBoundTSP} with worker processes on this
+ * machine against {@link BranchNBoundTSP} on seeded instances. Distances
+ * are random doubles, so no two tours share the optimal cost and both
+ * solvers have to return the very same tour.
+ */
+class DistributedBranchNBoundTSPTest {
+
+    //amount of cities of every instance, few enough for a second or two
+    private static final int CITIES = 12;
+
+    //seeds of the instances
+    private static final long[] SEEDS = {1, 2, 3};
+
+    @Test
+    void symmetricInstancesMatchTheLocalSearch () {
+        for (long seed : SEEDS) {
+            assertSameTour(symmetric(seed), seed, CheapestExitBound::new);
+        }
+    }
+
+    @Test
+    void workersAcceptTheOneTreeBounds () {
+        assertSameTour(symmetric(1), 1, OneTreeBound::new);
+        assertSameTour(symmetric(1), 1, HeldKarpBound::new);
+    }
+
+    @Test
+    void asymmetricInstancesMatchTheLocalSearch () {
+        for (long seed : SEEDS) {
+            assertSameTour(asymmetric(seed), seed, CheapestExitBound::new);
+        }
+    }
+
+    private static void assertSameTour (double[][] matrix, long seed,
+            Supplier<LowerBound> bound)
+    {
+        BranchNBoundTSP local = new BranchNBoundTSP(matrix);
+        local.setLowerBound(bound.get());
+        local.go();
+        DistributedBranchNBoundTSP distributed =
+                new DistributedBranchNBoundTSP(new MatrixDistances(matrix));
+        distributed.setLowerBound(bound.get());
+        distributed.setWorkers(2);
+        distributed.go();
+        assertEquals(local.getCost(), distributed.getCost(), 1e-9,
+                "cost of seed " + seed);
+        assertArrayEquals(local.getTour(), distributed.getTour(),
+                "tour of seed " + seed);
+    }
+
+    /**
+     * @return distances between random points in a square
+     */
+    private static double[][] symmetric (long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[CITIES];
+        double[] y = new double[CITIES];
+        for (int c = 0; c < CITIES; c++) {
+            x[c] = random.nextDouble() * 1000;
+            y[c] = random.nextDouble() * 1000;
+        }
+        double[][] matrix = new double[CITIES][CITIES];
+        for (int from = 0; from < CITIES; from++) {
+            for (int to = 0; to < CITIES; to++) {
+                matrix[from][to] = Math.hypot(x[from] - x[to],
+                        y[from] - y[to]);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return random distances which differ by direction
+     */
+    private static double[][] asymmetric (long seed) {
+        Random random = new Random(seed);
+        double[][] matrix = new double[CITIES][CITIES];
+        for (int from = 0; from < CITIES; from++) {
+            for (int to = 0; to < CITIES; to++) {
+                if (from != to) matrix[from][to] = 1 + random.nextDouble() * 999;
+            }
+        }
+        return matrix;
+    }
+}